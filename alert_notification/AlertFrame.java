@@ -0,0 +1,343 @@
+package alert_notification;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AlertFrame.java
+ * Định dạng nhị phân của 1 cảnh báo trên đường truyền (dùng chung Server + Client)
+ *
+ * Version 2 (hiện tại) - header cố định 28 byte, big-endian:
+ *   magic(1) version(1) flags(1) level(1) channel(1) topicLen(1) epoch(4) seq(8) timestamp(8) bodyLen(2)
+ * theo sau là topic UTF-8 (topicLen byte) rồi body UTF-8 (bodyLen byte).
+ * seq được đánh riêng cho từng channel multicast.
+ *
+ * Container (flags có FLAG_BATCH): header version 2 với seq = seq của frame con đầu tiên, topicLen = 0,
+ * body = dãy [len(2)][frame con] - mỗi frame con là 1 frame version 2 bình thường (có seq riêng).
+ * Chỉ gửi cho client đã báo hỗ trợ (xem ClientRegistry.CAP_BATCH).
+ *
+ * FLAG_REPLAY: frame phát lại cho client mới vào (CatchUpService), giữ nguyên epoch/seq/timestamp gốc;
+ * frame nạp lại từ alerts.log (không còn seq) có epoch 0, seq -1.
+ *
+ * Version 1 - header 26 byte, không có channel/topic:
+ *   magic(1) version(1) flags(1) level(1) epoch(4) seq(8) timestamp(8) bodyLen(2)
+ *
+ * - encode/decode làm việc trực tiếp trên ByteBuffer, không tạo String trung gian
+ * - Đối tượng AlertFrame là "con trỏ" dùng lại được: decode() ghi đè các trường
+ * - Vẫn đọc được định dạng text cũ "[LEVEL] msg" (legacy)
+ */
+public final class AlertFrame {
+
+    public static final byte MAGIC = (byte) 0xA7;
+    public static final byte VERSION = 2;
+    public static final int HEADER_SIZE = 28;
+    static final int HEADER_SIZE_V1 = 26;
+    public static final int MAX_DATAGRAM = 65507;
+    public static final int MAX_TOPIC = 255;
+    public static final int FLAG_REPLAY = 0x02;
+    public static final int FLAG_BATCH = 0x04;
+
+    public static final String[] LEVELS = {"INFO", "WARNING", "ERROR"};
+    public static final int INFO = 0, WARNING = 1, ERROR = 2;
+
+    // ===== Trường đã decode =====
+    public boolean legacy;
+    public int flags;
+    public int level;
+    public int channel;
+    public int epoch;
+    public long seq;
+    public long timestamp;
+
+    private ByteBuffer src;
+    private int topicOffset;
+    private int topicLength;
+    private int bodyOffset;
+    private int bodyLength;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    public static int levelCode(String level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equals(level)) return i;
+        }
+        return INFO;
+    }
+
+    public static String levelName(int code) {
+        return code >= 0 && code < LEVELS.length ? LEVELS[code] : LEVELS[INFO];
+    }
+
+    public String levelName() {
+        return levelName(level);
+    }
+
+    // ===== Decode =====
+
+    /**
+     * Đọc 1 frame từ [position, limit) của in. Không tiêu thụ buffer.
+     * @return false nếu không phải frame hợp lệ (sai magic/version, thiếu byte)
+     */
+    public boolean decode(ByteBuffer in) {
+        int p = in.position();
+        int n = in.remaining();
+        if (n > 0 && in.get(p) == '[') return decodeLegacy(in, p, n);
+        if (n < HEADER_SIZE_V1 || in.get(p) != MAGIC) return false;
+        int version = in.get(p + 1);
+        legacy = false;
+        flags = in.get(p + 2) & 0xFF;
+        level = in.get(p + 3);
+        src = in;
+        if (version == 1) {
+            channel = 0;
+            topicOffset = topicLength = 0;
+            epoch = in.getInt(p + 4);
+            seq = in.getLong(p + 8);
+            timestamp = in.getLong(p + 16);
+            bodyLength = in.getShort(p + 24) & 0xFFFF;
+            bodyOffset = p + HEADER_SIZE_V1;
+            return bodyLength <= n - HEADER_SIZE_V1;
+        }
+        if (version != VERSION || n < HEADER_SIZE) return false;
+        channel = in.get(p + 4) & 0xFF;
+        topicLength = in.get(p + 5) & 0xFF;
+        epoch = in.getInt(p + 6);
+        seq = in.getLong(p + 10);
+        timestamp = in.getLong(p + 18);
+        bodyLength = in.getShort(p + 26) & 0xFFFF;
+        topicOffset = p + HEADER_SIZE;
+        bodyOffset = topicOffset + topicLength;
+        return topicLength + bodyLength <= n - HEADER_SIZE;
+    }
+
+    /**
+     * Định dạng cũ: "[LEVEL] msg", không có seq/timestamp
+     */
+    private boolean decodeLegacy(ByteBuffer in, int p, int n) {
+        int close = -1;
+        for (int i = p + 1; i < p + n; i++) {
+            if (in.get(i) == ']') {
+                close = i;
+                break;
+            }
+        }
+        legacy = true;
+        flags = 0;
+        channel = 0;
+        topicOffset = topicLength = 0;
+        epoch = 0;
+        seq = -1;
+        timestamp = 0;
+        level = INFO;
+        src = in;
+        if (close < 0) {
+            bodyOffset = p;
+            bodyLength = n;
+            return true;
+        }
+        for (int l = 0; l < LEVELS.length; l++) {
+            if (matches(in, p + 1, close, LEVELS[l])) level = l;
+        }
+        int body = close + 1;
+        if (body < p + n && in.get(body) == ' ') body++;
+        bodyOffset = body;
+        bodyLength = p + n - body;
+        return true;
+    }
+
+    private static boolean matches(ByteBuffer in, int from, int to, String ascii) {
+        if (to - from != ascii.length()) return false;
+        for (int i = 0; i < ascii.length(); i++) {
+            if (in.get(from + i) != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public int bodyLength() {
+        return bodyLength;
+    }
+
+    public boolean isBatch() {
+        return !legacy && (flags & FLAG_BATCH) != 0;
+    }
+
+    public boolean isReplay() {
+        return !legacy && (flags & FLAG_REPLAY) != 0;
+    }
+
+    /** Sau decode() 1 container: vị trí frame con đầu tiên trong buffer đã decode */
+    public int batchStart() {
+        return bodyOffset;
+    }
+
+    public int batchEnd() {
+        return bodyOffset + bodyLength;
+    }
+
+    /**
+     * Decode frame con tại pos của container (ghi đè các trường của this)
+     * @return vị trí frame con kế tiếp, -1 nếu hết hoặc frame con hỏng
+     */
+    public int decodeNext(ByteBuffer container, int pos, int end) {
+        if (pos + 2 > end) return -1;
+        int len = container.getShort(pos) & 0xFFFF;
+        int next = pos + 2 + len;
+        if (next > end) return -1;
+        ByteBuffer sub = container.duplicate();
+        sub.limit(next).position(pos + 2);
+        return decode(sub) && !legacy && !isBatch() ? next : -1;
+    }
+
+    /**
+     * Giải mã body thành String (chỉ gọi khi cần hiển thị)
+     */
+    public String body() {
+        return text(bodyOffset, bodyLength);
+    }
+
+    /**
+     * Topic của cảnh báo, "" nếu không có
+     */
+    public String topic() {
+        return topicLength == 0 ? "" : text(topicOffset, topicLength);
+    }
+
+    private String text(int offset, int length) {
+        ByteBuffer b = src.duplicate();
+        b.limit(offset + length).position(offset);
+        try {
+            return decoder.reset().decode(b).toString();
+        } catch (CharacterCodingException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Dạng text giống định dạng cũ, dùng cho log/popup: "[LEVEL] msg" hoặc "[LEVEL/topic] msg"
+     */
+    public String toText() {
+        String topic = topic();
+        return "[" + levelName() + (topic.isEmpty() ? "" : "/" + topic) + "] " + body();
+    }
+
+    // ===== Encode =====
+
+    /**
+     * Frame version 2 của cảnh báo có vừa 1 datagram không (topic dài hơn MAX_TOPIC bị cắt khi encode).
+     * Định dạng legacy "[LEVEL] msg" luôn ngắn hơn nên cũng vừa
+     */
+    public static boolean fits(String topic, String body) {
+        int topicBytes = topic == null ? 0 : Math.min(MAX_TOPIC, utf8Length(topic));
+        return HEADER_SIZE + topicBytes + utf8Length(body) <= MAX_DATAGRAM;
+    }
+
+    /** Số byte UTF-8 như Encoder ghi (surrogate lẻ bị thay bằng '?') */
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                n++;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Bộ encode dùng lại được, không cấp phát khi đã ổn định. Không thread-safe.
+     */
+    public static final class Encoder {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private char[] chars = new char[1024];
+        private CharBuffer charBuf = CharBuffer.wrap(chars);
+
+        /**
+         * Ghi 1 frame nhị phân vào out từ vị trí hiện tại
+         */
+        public void encode(ByteBuffer out, int flags, int level, int channel, String topic,
+                           int epoch, long seq, long timestamp, String body) {
+            int start = out.position();
+            out.put(MAGIC).put(VERSION).put((byte) flags).put((byte) level)
+                    .put((byte) channel).put((byte) 0)
+                    .putInt(epoch).putLong(seq).putLong(timestamp).putShort((short) 0);
+            int limit = out.limit();
+            int topicStart = out.position();
+            if (topic != null && !topic.isEmpty()) {
+                out.limit(Math.min(limit, topicStart + MAX_TOPIC));
+                try {
+                    encodeText(out, topic, true);
+                } finally {
+                    out.limit(limit);
+                }
+            }
+            int bodyStart = out.position();
+            out.limit(Math.min(limit, start + MAX_DATAGRAM));
+            try {
+                encodeText(out, body, false);
+            } finally {
+                out.limit(limit);
+            }
+            out.put(start + 5, (byte) (bodyStart - topicStart));
+            out.putShort(start + 26, (short) (out.position() - bodyStart));
+        }
+
+        /**
+         * Ghi header container tại start (sau khi đã ghi các frame con từ start + HEADER_SIZE tới out.position())
+         */
+        public void encodeBatchHeader(ByteBuffer out, int start, int level, int channel, int epoch,
+                                      long firstSeq, long timestamp) {
+            int bodyLen = out.position() - start - HEADER_SIZE;
+            out.put(start, MAGIC).put(start + 1, VERSION).put(start + 2, (byte) FLAG_BATCH)
+                    .put(start + 3, (byte) level).put(start + 4, (byte) channel).put(start + 5, (byte) 0)
+                    .putInt(start + 6, epoch).putLong(start + 10, firstSeq).putLong(start + 18, timestamp)
+                    .putShort(start + 26, (short) bodyLen);
+        }
+
+        /**
+         * Ghi định dạng text cũ "[LEVEL] msg"
+         */
+        public void encodeLegacy(ByteBuffer out, int level, String body) {
+            out.put((byte) '[');
+            encodeText(out, levelName(level), false);
+            out.put((byte) ']').put((byte) ' ');
+            encodeText(out, body, false);
+        }
+
+        /** @param truncate true = hết chỗ thì giữ phần đầu (chỉ gồm ký tự trọn vẹn) thay vì báo lỗi */
+        private void encodeText(ByteBuffer out, String s, boolean truncate) {
+            int n = s.length();
+            if (n > chars.length) {
+                chars = new char[Math.max(n, chars.length * 2)];
+                charBuf = CharBuffer.wrap(chars);
+            }
+            s.getChars(0, n, chars, 0);
+            charBuf.clear();
+            charBuf.limit(n);
+            encoder.reset();
+            CoderResult r = encoder.encode(charBuf, out, true);
+            if (r.isOverflow() && truncate) return;
+            if (r.isOverflow() || encoder.flush(out).isOverflow()) {
+                throw new IllegalArgumentException("Alert too large for one datagram (max " + MAX_DATAGRAM + " bytes)");
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AlertJournal.java
+ * Ghi journal cảnh báo bất đồng bộ, theo lô (group commit)
+ * - append() chỉ đưa bản ghi vào hàng đợi có giới hạn, không chạm đĩa; tryAppend() không bao giờ chờ
+ *   (dùng trên luồng gửi: hàng đợi đầy thì bỏ bản ghi và đếm, không để đĩa chậm chặn multicast)
+ * - 1 writer thread gom lô và ghi vào 1 FileChannel mở lâu dài
+ * - Chính sách fsync: mỗi lô, mỗi N ms, hoặc không bao giờ
+ * - Đếm số lần hàng đợi đầy (backpressure) để theo dõi, đo thời gian ghi mỗi lô (setWriteLatency)
+ * - Báo offset của từng bản ghi đã ghi cho Listener (vd. HistoryStore)
+ * - Xoay vòng file theo dung lượng hoặc theo ngày, thực hiện ngay trên writer thread
+ *   giữa 2 lô nên không chặn luồng gửi và không mất bản ghi đang chờ trong hàng đợi
+ * - close(): bản ghi nào đã được nhận (append/tryAppend trả về bình thường) đều được ghi trước khi
+ *   writer dừng; lời gọi đến sau khi đóng bị từ chối
+ */
+public class AlertJournal implements Closeable {
+
+    public enum FsyncPolicy { EVERY_BATCH, INTERVAL, NEVER }
+
+    /**
+     * Được gọi trên writer thread sau mỗi lô ghi thành công
+     */
+    public interface Listener {
+        /**
+         * @param offsets offset đầu dòng của lines[i] trong file
+         * @param end     offset ngay sau bản ghi cuối cùng
+         */
+        void onWritten(List<String> lines, long[] offsets, long end);
+    }
+
+    /**
+     * Nhận file log vừa đóng khi tới lúc xoay vòng, phải chuyển file đi nơi khác
+     */
+    public interface Roller {
+        void roll(Path file) throws IOException;
+    }
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Path file;
+    private final BlockingQueue<String> queue;
+    private final int maxBatch;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final Thread writer;
+    private final Listener listener;
+    private long[] offsets;
+
+    private FileChannel channel;
+    private LocalDate openedDay;
+    private volatile Roller roller;
+    private volatile long rollMaxBytes;
+    private volatile boolean rollDaily;
+    private volatile Histogram writeLatency;
+    private ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+    private long lastFsync = System.currentTimeMillis();
+    private volatile boolean closing;
+    // Số lời gọi append đang ở giữa kiểm tra closing và offer: writer chưa được dừng khi còn > 0
+    private final AtomicLong appending = new AtomicLong();
+
+    // Số thứ tự bản ghi đã nhận / đã ghi xong, dùng cho flush()
+    private final AtomicLong enqueued = new AtomicLong();
+    private long written;
+    private final Object writtenLock = new Object();
+
+    private final AtomicLong backpressureEvents = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile int maxDepth;
+
+    public AlertJournal(Path file, int capacity, int maxBatch, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this(file, capacity, maxBatch, fsyncPolicy, fsyncIntervalMs, null);
+    }
+
+    public AlertJournal(Path file, int capacity, int maxBatch, FsyncPolicy fsyncPolicy, long fsyncIntervalMs,
+                        Listener listener) {
+        this.file = file;
+        this.listener = listener;
+        this.offsets = new long[maxBatch];
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.writer = new Thread(this::runWriter, "alert-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Bật xoay vòng: khi file đạt maxBytes (0 = không giới hạn) hoặc sang ngày mới
+     */
+    public void setRollover(long maxBytes, boolean daily, Roller roller) {
+        this.rollMaxBytes = maxBytes;
+        this.rollDaily = daily;
+        this.roller = roller;
+    }
+
+    /**
+     * Ghi thời gian (µs) của mỗi lô: write + fsync nếu có
+     */
+    public void setWriteLatency(Histogram h) {
+        this.writeLatency = h;
+    }
+
+    /**
+     * Đưa 1 dòng vào hàng đợi. Chỉ block khi hàng đợi đầy (backpressure).
+     */
+    public void append(String line) {
+        appending.incrementAndGet();
+        try {
+            if (closing) throw new IllegalStateException("Journal closed");
+            if (!queue.offer(line)) {
+                backpressureEvents.incrementAndGet();
+                try {
+                    queue.put(line);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failedRecords.incrementAndGet();
+                    return;
+                }
+            }
+            enqueued.incrementAndGet();
+        } finally {
+            appending.decrementAndGet();
+        }
+        int depth = queue.size();
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    /**
+     * Như append() nhưng không bao giờ chờ: hàng đợi đầy thì bỏ dòng và trả về false
+     */
+    public boolean tryAppend(String line) {
+        appending.incrementAndGet();
+        try {
+            if (closing || !queue.offer(line)) {
+                backpressureEvents.incrementAndGet();
+                failedRecords.incrementAndGet();
+                return false;
+            }
+            enqueued.incrementAndGet();
+        } finally {
+            appending.decrementAndGet();
+        }
+        int depth = queue.size();
+        if (depth > maxDepth) maxDepth = depth;
+        return true;
+    }
+
+    /**
+     * Chờ tới khi mọi bản ghi đã append trước lời gọi này được ghi xuống file
+     */
+    public void flush() {
+        long target = enqueued.get();
+        synchronized (writtenLock) {
+            while (written < target && writer.isAlive()) {
+                try {
+                    writtenLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public int depth() { return queue.size(); }
+    public int maxDepth() { return maxDepth; }
+    public long backpressureEvents() { return backpressureEvents.get(); }
+    public long failedRecords() { return failedRecords.get(); }
+    public long batches() { return batches.get(); }
+    public long enqueued() { return enqueued.get(); }
+
+    // ===== Writer thread =====
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(maxBatch);
+        while (!drained()) {
+            try {
+                String first = queue.poll(pollTimeoutMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    maybeTimedFsync();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // Không dừng giữa chừng: vòng lặp chỉ thoát khi closing và hàng đợi rỗng
+            }
+            markWritten(batch.size());
+            batch.clear();
+        }
+        closeChannel();
+    }
+
+    /**
+     * Đã đóng và không còn gì để ghi. Đọc appending trước queue: lời gọi nào đã qua kiểm tra closing
+     * thì hoặc vẫn đang được đếm, hoặc bản ghi của nó đã nằm trong hàng đợi
+     */
+    private boolean drained() {
+        return closing && appending.get() == 0 && queue.isEmpty();
+    }
+
+    private long pollTimeoutMs() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL ? Math.max(1, fsyncIntervalMs) : 200;
+    }
+
+    private void writeBatch(List<String> batch) {
+        maybeRoll();
+        buf.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] b = batch.get(i).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(b.length + NEWLINE.length);
+            offsets[i] = buf.position();
+            buf.put(b).put(NEWLINE);
+        }
+        buf.flip();
+        long start = System.nanoTime();
+        try {
+            FileChannel ch = ensureOpen();
+            long base = ch.size();
+            while (buf.hasRemaining()) ch.write(buf);
+            batches.incrementAndGet();
+            if (listener != null) {
+                for (int i = 0; i < batch.size(); i++) offsets[i] += base;
+                try {
+                    listener.onWritten(batch, offsets, base + buf.limit());
+                } catch (RuntimeException e) {
+                    System.err.println("⚠ Journal listener lỗi: " + e);
+                }
+            }
+            if (fsyncPolicy == FsyncPolicy.EVERY_BATCH) {
+                ch.force(false);
+                lastFsync = System.currentTimeMillis();
+            } else {
+                maybeTimedFsync();
+            }
+            Histogram h = writeLatency;
+            if (h != null) h.record((System.nanoTime() - start) / 1000);
+        } catch (IOException e) {
+            failedRecords.addAndGet(batch.size());
+            System.err.println("⚠ Không thể ghi log: " + e.getMessage());
+            closeChannel();
+        }
+    }
+
+    private void maybeRoll() {
+        Roller r = roller;
+        if (r == null) return;
+        try {
+            FileChannel ch = ensureOpen();
+            long size = ch.size();
+            boolean bySize = rollMaxBytes > 0 && size >= rollMaxBytes;
+            boolean byDay = rollDaily && size > 0 && !LocalDate.now().equals(openedDay);
+            if (!bySize && !byDay) return;
+            closeChannel();
+            r.roll(file);
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể xoay vòng log: " + e.getMessage());
+        }
+    }
+
+    private void maybeTimedFsync() {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || channel == null) return;
+        long now = System.currentTimeMillis();
+        if (now - lastFsync < fsyncIntervalMs) return;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể fsync log: " + e.getMessage());
+        }
+        lastFsync = now;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buf.remaining() >= extra) return;
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(buf.capacity() * 2, buf.position() + extra));
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+
+    private FileChannel ensureOpen() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            openedDay = channel.size() > 0
+                    ? Files.getLastModifiedTime(file).toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                    : LocalDate.now();
+        }
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            if (fsyncPolicy != FsyncPolicy.NEVER) channel.force(false);
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private void markWritten(int n) {
+        synchronized (writtenLock) {
+            written += n;
+            writtenLock.notifyAll();
+        }
+    }
+
+    /**
+     * Xả hết hàng đợi, fsync rồi đóng file
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package alert_notification;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AlertPresenter.java
+ * Hiển thị cảnh báo nhận được trong 1 panel không modal thay cho mỗi cảnh báo 1 JOptionPane
+ * - offer() gọi từ luồng nhận: chỉ đưa vào hàng đợi có giới hạn theo level rồi trả về ngay, không chờ EDT
+ * - Hàng đợi đầy thì bỏ bản cũ nhất của level đó (vẫn được đếm); INFO giữ ít nhất, ERROR giữ nhiều nhất
+ * - Swing Timer (-Dalert.ui.fps, mặc định 4 Hz) gom cả đợt: cập nhật số đếm theo level và danh sách gần nhất,
+ *   ERROR xếp trên WARNING trên INFO; INFO đến dồn dập được gộp thành 1 dòng "+N INFO"
+ * - Có ERROR chưa xem: nền đỏ nhạt + 1 tiếng beep mỗi đợt; nút "Đã xem" xóa trạng thái
+ */
+public class AlertPresenter extends JPanel {
+
+    private static final int[] QUEUE_CAPACITY = new int[AlertFrame.LEVELS.length];
+    private static final int MAX_ROWS = 30;
+    private static final int INFO_ROWS_PER_FRAME = 3;
+
+    static {
+        QUEUE_CAPACITY[AlertFrame.INFO] = 8;
+        QUEUE_CAPACITY[AlertFrame.WARNING] = 32;
+        QUEUE_CAPACITY[AlertFrame.ERROR] = 128;
+    }
+
+    private static final class Item {
+        final int level;
+        final String text;
+
+        Item(int level, String text) {
+            this.level = level;
+            this.text = text;
+        }
+    }
+
+    // ===== Phía luồng nhận (khóa ngắn, không chạm Swing) =====
+    private final Object lock = new Object();
+    private final List<ArrayDeque<String>> pending = new ArrayList<>();
+    private final int[] arrived = new int[AlertFrame.LEVELS.length]; // kể cả bản bị bỏ
+    private final LongAdder[] dropped = new LongAdder[AlertFrame.LEVELS.length];
+
+    // ===== Phía EDT =====
+    private final int[] unread = new int[AlertFrame.LEVELS.length];
+    private final List<Item> rows = new ArrayList<>();
+    private final DefaultListModel<Item> model = new DefaultListModel<>();
+    private final JLabel counts = new JLabel();
+    private final Color normalBackground;
+    private final Timer timer;
+
+    public AlertPresenter() {
+        super(new BorderLayout(6, 4));
+        for (int i = 0; i < AlertFrame.LEVELS.length; i++) {
+            pending.add(new ArrayDeque<>(QUEUE_CAPACITY[i]));
+            dropped[i] = Metrics.global().counter("alert_ui_dropped_total",
+                    "Alerts not shown individually because the presentation queue was full",
+                    "level", AlertFrame.LEVELS[i]);
+        }
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createTitledBorder("Cảnh báo mới"), new EmptyBorder(2, 4, 2, 4)));
+        normalBackground = getBackground();
+
+        counts.setFont(counts.getFont().deriveFont(Font.BOLD, 14f));
+        JButton ack = new JButton("Đã xem");
+        ack.addActionListener(e -> acknowledge());
+        JPanel header = new JPanel(new BorderLayout());
+        header.setOpaque(false);
+        header.add(counts, BorderLayout.CENTER);
+        header.add(ack, BorderLayout.EAST);
+        add(header, BorderLayout.NORTH);
+
+        JList<Item> list = new JList<>(model);
+        list.setCellRenderer(new ItemRenderer());
+        list.setVisibleRowCount(5);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        setVisible(false);
+        int fps = Math.max(1, Integer.getInteger("alert.ui.fps", 4));
+        timer = new Timer(1000 / fps, e -> drain());
+        timer.setCoalesce(true);
+        timer.start();
+    }
+
+    /**
+     * Gọi từ luồng nhận, không bao giờ chờ giao diện
+     */
+    public void offer(int level, String text) {
+        if (level < 0 || level >= AlertFrame.LEVELS.length) level = AlertFrame.INFO;
+        synchronized (lock) {
+            ArrayDeque<String> q = pending.get(level);
+            if (q.size() == QUEUE_CAPACITY[level]) {
+                q.pollFirst();
+                dropped[level].increment();
+            }
+            q.addLast(text);
+            arrived[level]++;
+        }
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    // ===== EDT =====
+    private void drain() {
+        List<Item> batch = new ArrayList<>();
+        int[] n = new int[AlertFrame.LEVELS.length];
+        synchronized (lock) {
+            for (int lv = 0; lv < n.length; lv++) {
+                n[lv] = arrived[lv];
+                arrived[lv] = 0;
+                ArrayDeque<String> q = pending.get(lv);
+                if (lv == AlertFrame.INFO && n[lv] > INFO_ROWS_PER_FRAME) {
+                    // Đợt INFO lớn: chỉ 1 dòng tóm tắt kèm nội dung mới nhất
+                    batch.add(new Item(lv, "+" + n[lv] + " INFO, mới nhất: " + q.peekLast()));
+                    q.clear();
+                } else {
+                    for (String s; (s = q.pollFirst()) != null; ) batch.add(new Item(lv, s));
+                }
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        boolean newError = n[AlertFrame.ERROR] > 0;
+        for (int lv = 0; lv < n.length; lv++) unread[lv] += n[lv];
+        // Mới nhất lên đầu trong từng level, level cao hơn xếp trước
+        for (Item it : batch) rows.add(0, it);
+        rows.sort((a, b) -> b.level - a.level); // sort ổn định: giữ thứ tự mới -> cũ trong cùng level
+        while (rows.size() > MAX_ROWS) rows.remove(rows.size() - 1);
+        model.clear();
+        for (Item it : rows) model.addElement(it);
+
+        updateHeader();
+        if (newError) Toolkit.getDefaultToolkit().beep();
+        if (!isVisible()) {
+            setVisible(true);
+            revalidate();
+        }
+    }
+
+    private void updateHeader() {
+        counts.setText("🚨 ERROR: " + unread[AlertFrame.ERROR]
+                + "    ⚠ WARNING: " + unread[AlertFrame.WARNING]
+                + "    ℹ INFO: " + unread[AlertFrame.INFO]);
+        setBackground(unread[AlertFrame.ERROR] > 0 ? new Color(255, 225, 225) : normalBackground);
+    }
+
+    private void acknowledge() {
+        Arrays.fill(unread, 0);
+        rows.clear();
+        model.clear();
+        updateHeader();
+        setVisible(false);
+        revalidate();
+    }
+
+    private static final class ItemRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            Item it = (Item) value;
+            String icon = it.level == AlertFrame.ERROR ? "🚨 " : it.level == AlertFrame.WARNING ? "⚠ " : "ℹ ";
+            super.getListCellRendererComponent(list, icon + it.text, index, isSelected, cellHasFocus);
+            if (!isSelected) {
+                setForeground(it.level == AlertFrame.ERROR ? new Color(180, 0, 0)
+                        : it.level == AlertFrame.WARNING ? new Color(160, 90, 0) : list.getForeground());
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package alert_notification;
+
+/**
+ * AlertSink.java
+ * Nhận sự kiện từ ServerEngine / ClientEngine (tách phần mạng khỏi giao diện)
+ * - Mọi phương thức mặc định không làm gì: sink chỉ cài các sự kiện mình cần
+ * - Được gọi trên luồng mạng của engine nên không được chặn lâu
+ * - Các cài đặt có sẵn: LineSink (ConsoleSink, FileLogSink, log giao diện), MetricsSink; SinkChain để gộp
+ */
+public interface AlertSink {
+
+    // ===== Phía server =====
+    default void alertSent(long seq, String level, String topic, String msg, String origin) {}
+
+    /**
+     * Gọi cho mỗi heartbeat (đường nóng)
+     * @param intervalMs số ms kể từ heartbeat trước của client này, -1 với heartbeat đầu tiên
+     */
+    default void clientHeartbeat(String clientId, long intervalMs) {}
+
+    default void clientJoined(String clientId, String ip) {}
+
+    default void clientLeft(String clientId) {}
+
+    default void clientTimedOut(String clientId) {}
+
+    /** Client được nạp lại từ snapshot khi server khởi động (không phải join mới) */
+    default void clientRestored(String clientId) {}
+
+    // ===== Phía client =====
+    /**
+     * @param seq       -1 với frame text cũ (không có seq)
+     * @param latencyMs -1 nếu không biết thời điểm gửi
+     */
+    default void alertReceived(int level, String text, long seq, long latencyMs, boolean recovered) {}
+
+    default void alertsLost(int count) {}
+
+    // ===== Chung =====
+    /** Dòng log tự do, type như "INFO", "ERROR", "NAK" */
+    default void log(String type, String text) {}
+}
@@ -0,0 +1,392 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CatchUpService.java
+ * Phát lại cảnh báo gần đây cho client mới vào (late joiner) bằng unicast
+ * - Vòng đệm các cảnh báo đã gửi (mọi channel, theo thứ tự gửi); lúc khởi động nạp phần đuôi alerts.log
+ * - Kích hoạt khi client join (heartbeat đầu tiên) hoặc khi client gửi "CATCHUP:<levelMask>:<max>:<sinceMs>:<clientId>"
+ * - Phát lại tối đa max cảnh báo từ sinceMs tới lúc yêu cầu; ERROR được gửi trước, sau đó tới các level còn lại
+ * - Frame phát lại giữ epoch/seq/timestamp gốc và có cờ AlertFrame.FLAG_REPLAY, client khử trùng lặp theo seq
+ * - Mỗi client 1 cursor; 1 luồng gửi xoay vòng 1 frame/client mỗi lượt, tổng tốc độ giới hạn bằng token bucket
+ *   -> hàng nghìn client vào lại cùng lúc không dồn tải lên server, client nào cũng tiến đều
+ * - Client đang có cursor mà yêu cầu lại: chỉ cập nhật địa chỉ, không bắt đầu lại
+ *
+ * Cấu hình (fromSystemProperties):
+ * - alert.catchup = true | false (mặc định true; luôn tắt với alert.wire=legacy)
+ * - alert.catchup.buffer = số cảnh báo gần nhất giữ trong bộ nhớ (mặc định 2048)
+ * - alert.catchup.max = số cảnh báo tối đa mỗi lần phát lại (mặc định 100)
+ * - alert.catchup.minutes = chỉ phát lại cảnh báo trong T phút gần nhất (mặc định 15)
+ * - alert.catchup.rate = tổng số frame/giây cho mọi client (mặc định 2000)
+ * - alert.catchup.maxClients = số cursor đồng thời tối đa, vượt quá thì từ chối (mặc định 10000)
+ * - alert.catchup.onJoin = tự phát lại khi client join (mặc định true)
+ */
+public class CatchUpService implements Closeable {
+
+    public static final int ALL_LEVELS = (1 << AlertFrame.LEVELS.length) - 1;
+
+    private static final class Entry {
+        final long timestamp;
+        final int level;
+        final int channel;
+        final int epoch;
+        final long seq;
+        final String topic;
+        final String msg;
+
+        Entry(long timestamp, int level, int channel, int epoch, long seq, String topic, String msg) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.channel = channel;
+            this.epoch = epoch;
+            this.seq = seq;
+            this.topic = topic;
+            this.msg = msg;
+        }
+    }
+
+    private static final class Cursor {
+        final String clientId;
+        final int levelMask;
+        final long start;
+        final long end;      // không gồm end: cảnh báo gửi sau yêu cầu client đã nhận qua multicast
+        SocketAddress target;
+        long next;
+        boolean errorsDone;  // lượt 1: chỉ ERROR, lượt 2: các level còn lại
+
+        Cursor(String clientId, SocketAddress target, int levelMask, long start, long end) {
+            this.clientId = clientId;
+            this.target = target;
+            this.levelMask = levelMask;
+            this.start = start;
+            this.end = end;
+            this.next = start;
+        }
+    }
+
+    private final ChannelMap map;
+    private final boolean onJoin;
+    private final int defaultMax;
+    private final long windowMs;
+    private final int maxClients;
+    private final double rate;
+    private final double burst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Entry[] ring;
+    private long head; // tổng số cảnh báo đã ghi; chỉ số tuyệt đối của ô kế tiếp
+    private final Map<String, Cursor> cursors = new HashMap<>();
+    private final ArrayDeque<Cursor> rotation = new ArrayDeque<>();
+
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(AlertFrame.MAX_DATAGRAM);
+    private final AlertFrame.Encoder encoder = new AlertFrame.Encoder();
+    private DatagramChannel channel;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private volatile boolean closed;
+    private final Thread thread;
+
+    private final LongAdder requests;
+    private final LongAdder rejected;
+    private final LongAdder frames;
+    private final LongAdder completed;
+
+    public CatchUpService(ChannelMap map, int bufferSize, int defaultMax, long windowMs, double rate,
+                          int maxClients, boolean onJoin, Metrics metrics) {
+        this.map = map;
+        this.ring = new Entry[Math.max(16, bufferSize)];
+        this.defaultMax = Math.max(1, defaultMax);
+        this.windowMs = windowMs;
+        this.rate = Math.max(1, rate);
+        this.burst = Math.max(1, this.rate / 20); // tối đa 50 ms dồn lại
+        this.tokens = burst;
+        this.maxClients = Math.max(1, maxClients);
+        this.onJoin = onJoin;
+        requests = metrics.counter("alert_catchup_requests_total", "Catch-up replays requested (join or explicit)");
+        rejected = metrics.counter("alert_catchup_rejected_total", "Catch-up requests refused because too many were active");
+        frames = metrics.counter("alert_catchup_frames_total", "Alerts replayed to late joiners");
+        completed = metrics.counter("alert_catchup_completed_total", "Catch-up replays finished");
+        metrics.gauge("alert_catchup_active", "Clients currently being caught up", this::active);
+        thread = new Thread(this::run, "alert-catchup");
+        thread.setDaemon(true);
+    }
+
+    /** @return null nếu -Dalert.catchup=false hoặc dùng định dạng legacy (client cũ không đọc được frame phát lại) */
+    public static CatchUpService fromSystemProperties(ChannelMap map, Metrics metrics) {
+        if (!Boolean.parseBoolean(System.getProperty("alert.catchup", "true"))
+                || "legacy".equalsIgnoreCase(System.getProperty("alert.wire"))) {
+            return null;
+        }
+        return new CatchUpService(map,
+                Integer.getInteger("alert.catchup.buffer", 2048),
+                Integer.getInteger("alert.catchup.max", 100),
+                TimeUnit.MINUTES.toMillis(Long.getLong("alert.catchup.minutes", 15L)),
+                Double.parseDouble(System.getProperty("alert.catchup.rate", "2000")),
+                Integer.getInteger("alert.catchup.maxClients", 10_000),
+                Boolean.parseBoolean(System.getProperty("alert.catchup.onJoin", "true")),
+                metrics);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public boolean onJoin() {
+        return onJoin;
+    }
+
+    // ===== Vòng đệm =====
+
+    /**
+     * Ghi 1 cảnh báo vừa gửi (gọi từ luồng gửi)
+     */
+    public void record(int channel, int epoch, long seq, String level, String topic, String msg, long timestamp) {
+        add(new Entry(timestamp, AlertFrame.levelCode(level), channel, epoch, seq, topic, msg));
+    }
+
+    /**
+     * Nạp phần đuôi lịch sử khi khởi động (chỉ khi vòng đệm còn trống).
+     * Dòng log không có seq: frame phát lại mang epoch 0, seq -1
+     */
+    public void seed(HistoryStore store) {
+        lock.lock();
+        try {
+            if (head > 0) return;
+        } finally {
+            lock.unlock();
+        }
+        int size = store.size();
+        List<String> lines = store.getRange(Math.max(0, size - ring.length), ring.length);
+        for (String line : lines) {
+            int level = HistoryStore.levelOf(line);
+            long ts = HistoryStore.tsOf(line);
+            if (level < 0 || ts < 0) continue;
+            String topic = Log.topicOf(line);
+            add(new Entry(ts, level, map.route(AlertFrame.LEVELS[level], topic), 0, -1, topic, Log.bodyOf(line)));
+        }
+    }
+
+    private void add(Entry e) {
+        lock.lock();
+        try {
+            ring[(int) (head++ % ring.length)] = e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===== Yêu cầu =====
+
+    /**
+     * Bắt đầu phát lại cho 1 client
+     * @param max      số cảnh báo tối đa, <= 0 = mặc định của server (không vượt quá mặc định)
+     * @param sinceMs  chỉ cảnh báo từ thời điểm này, <= 0 = theo alert.catchup.minutes
+     * @return false nếu bị từ chối (quá nhiều client đang được phát lại)
+     */
+    public boolean request(String clientId, SocketAddress target, int levelMask, int max, long sinceMs) {
+        requests.increment();
+        long now = System.currentTimeMillis();
+        long since = Math.max(sinceMs, now - windowMs);
+        int limit = max <= 0 ? defaultMax : Math.min(max, defaultMax);
+        lock.lock();
+        try {
+            Cursor c = cursors.get(clientId);
+            if (c != null) {
+                c.target = target;
+                return true;
+            }
+            if (cursors.size() >= maxClients) {
+                rejected.increment();
+                return false;
+            }
+            // Lùi từ cảnh báo mới nhất: tối đa limit cảnh báo thuộc levelMask, không cũ hơn since
+            long oldest = Math.max(0, head - ring.length);
+            long start = head;
+            for (int n = 0; start > oldest && n < limit; ) {
+                Entry e = ring[(int) ((start - 1) % ring.length)];
+                if (e.timestamp < since) break;
+                start--;
+                if ((levelMask & (1 << e.level)) != 0) n++;
+            }
+            if (start == head) {
+                completed.increment();
+                return true;
+            }
+            c = new Cursor(clientId, target, levelMask, start, head);
+            cursors.put(clientId, c);
+            rotation.addLast(c);
+            hasWork.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Xử lý phần sau "CATCHUP:" của gói tin: "<levelMask>:<max>:<sinceMs>:<clientId>"
+     * @return false nếu sai định dạng
+     */
+    public boolean onRequest(String body, SocketAddress from) {
+        String[] p = body.split(":", 4);
+        if (p.length < 4 || p[3].isEmpty()) return false;
+        try {
+            int mask = Integer.parseInt(p[0]) & ALL_LEVELS;
+            request(p[3], from, mask == 0 ? ALL_LEVELS : mask, Integer.parseInt(p[1]), Long.parseLong(p[2]));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Client rời đi: bỏ cursor nếu còn */
+    public void cancel(String clientId) {
+        lock.lock();
+        try {
+            Cursor c = cursors.remove(clientId);
+            if (c != null) rotation.remove(c);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int active() {
+        lock.lock();
+        try {
+            return cursors.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long frames() { return frames.sum(); }
+    public long rejected() { return rejected.sum(); }
+
+    // ===== Luồng gửi =====
+    // Chỉ chọn cursor/cảnh báo dưới lock; channel.send chạy ngoài lock để phát lại chậm
+    // không chặn record() trên luồng gửi multicast
+    private void run() {
+        while (!closed) {
+            Cursor c;
+            Entry e;
+            SocketAddress target;
+            lock.lock();
+            try {
+                while (rotation.isEmpty() && !closed) hasWork.await();
+                if (closed) return;
+                refill();
+                if (tokens < 1) {
+                    c = null;
+                    e = null;
+                    target = null;
+                } else {
+                    // Xoay vòng: mỗi client 1 frame tới khi hết token
+                    c = rotation.pollFirst();
+                    e = next(c);
+                    target = c.target;
+                    if (e == null) {
+                        cursors.remove(c.clientId);
+                        completed.increment();
+                        continue;
+                    }
+                    tokens -= 1;
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (c == null) {
+                LockSupport.parkNanos((long) ((1 - tokens) / rate * 1e9));
+                continue;
+            }
+            boolean sent = send(e, target);
+            if (sent) frames.increment();
+            lock.lock();
+            try {
+                // cancel() có thể đã bỏ cursor trong lúc gửi
+                if (cursors.get(c.clientId) != c) continue;
+                if (sent) {
+                    rotation.addLast(c);
+                } else {
+                    cursors.remove(c.clientId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void refill() {
+        long nowNanos = System.nanoTime();
+        tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * rate / 1e9);
+        lastRefillNanos = nowNanos;
+    }
+
+    /** Cảnh báo kế tiếp của cursor, null nếu đã xong. Ô đã bị ghi đè thì bỏ qua */
+    private Entry next(Cursor c) {
+        while (true) {
+            c.next = Math.max(c.next, head - ring.length);
+            if (c.next >= c.end) {
+                if (c.errorsDone) return null;
+                c.errorsDone = true;
+                c.next = c.start;
+                continue;
+            }
+            Entry e = ring[(int) (c.next++ % ring.length)];
+            if ((c.levelMask & (1 << e.level)) == 0) continue;
+            if ((e.level == AlertFrame.ERROR) != c.errorsDone) return e;
+        }
+    }
+
+    private boolean send(Entry e, SocketAddress target) {
+        try {
+            if (channel == null || !channel.isOpen()) channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            buf.clear();
+            encoder.encode(buf, AlertFrame.FLAG_REPLAY, e.level, e.channel, e.topic, e.epoch, e.seq, e.timestamp, e.msg);
+            buf.flip();
+            channel.send(buf, target);
+            return true;
+        } catch (IOException ex) {
+            System.err.println("⚠ Không thể phát lại tới " + target + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package alert_notification;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ChannelMap.java
+ * Ánh xạ (level, topic) -> multicast channel (group:port), dùng chung cho Server và Client
+ *
+ * Cấu hình qua -Dalert.channels, mỗi mục "LEVEL=group:port" hoặc "LEVEL/topic=group:port",
+ * cách nhau bởi dấu phẩy. Ví dụ:
+ *   INFO=230.0.0.1:5000,WARNING=230.0.0.2:5000,ERROR=230.0.0.3:5000,ERROR/db=230.0.0.4:5000
+ *
+ * - Tra cứu: (level, topic) khớp chính xác, rồi tới level, rồi tới channel đầu tiên
+ * - Channel id = thứ tự xuất hiện của group:port (không trùng lặp) trong cấu hình
+ * - Client chỉ join group của các level/topic mình đăng ký. Các group mặc định dùng chung port 5000 nên
+ *   socket vẫn có thể nhận datagram của group khác (Linux: IP_MULTICAST_ALL) - ClientEngine lọc lại
+ *   theo channel id trong header, trước khi giải mã nội dung
+ * - alert.wire=legacy: client cũ chỉ join 230.0.0.1:5000, nên mọi level đi 1 channel đó;
+ *   cấu hình alert.channels có nhiều group bị từ chối
+ */
+public class ChannelMap {
+
+    public static final String DEFAULT_SPEC =
+            "INFO=230.0.0.1:5000,WARNING=230.0.0.2:5000,ERROR=230.0.0.3:5000";
+    /** Group duy nhất mà client cũ (text "[LEVEL] msg") join */
+    public static final String LEGACY_SPEC = "INFO=230.0.0.1:5000";
+
+    private final List<InetSocketAddress> channels = new ArrayList<>();
+    private final Map<String, Integer> routes = new LinkedHashMap<>();
+
+    public ChannelMap(String spec) throws UnknownHostException {
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            int colon = entry.lastIndexOf(':');
+            if (eq <= 0 || colon < eq) throw new IllegalArgumentException("Sai cấu hình channel: " + entry);
+            String key = normalize(entry.substring(0, eq));
+            InetSocketAddress addr = new InetSocketAddress(
+                    InetAddress.getByName(entry.substring(eq + 1, colon).trim()),
+                    Integer.parseInt(entry.substring(colon + 1).trim()));
+            int id = channels.indexOf(addr);
+            if (id < 0) {
+                id = channels.size();
+                channels.add(addr);
+            }
+            routes.put(key, id);
+        }
+        if (channels.isEmpty()) throw new IllegalArgumentException("Cần ít nhất 1 channel");
+    }
+
+    public static ChannelMap fromSystemProperties() throws UnknownHostException {
+        if (!"legacy".equalsIgnoreCase(System.getProperty("alert.wire"))) {
+            return new ChannelMap(System.getProperty("alert.channels", DEFAULT_SPEC));
+        }
+        ChannelMap map = new ChannelMap(System.getProperty("alert.channels", LEGACY_SPEC));
+        if (map.size() > 1) {
+            throw new IllegalArgumentException("alert.wire=legacy chỉ dùng được 1 channel (client cũ chỉ join 1 group), "
+                    + "alert.channels có " + map.size());
+        }
+        return map;
+    }
+
+    private static String normalize(String key) {
+        key = key.trim();
+        int slash = key.indexOf('/');
+        if (slash < 0) return key.toUpperCase();
+        return key.substring(0, slash).trim().toUpperCase() + "/" + key.substring(slash + 1).trim();
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    public InetSocketAddress address(int channel) {
+        return channels.get(channel);
+    }
+
+    public List<InetSocketAddress> addresses() {
+        return Collections.unmodifiableList(channels);
+    }
+
+    /**
+     * Channel id cho 1 cảnh báo
+     */
+    public int route(String level, String topic) {
+        Integer id = null;
+        if (topic != null && !topic.isEmpty()) id = routes.get(level + "/" + topic);
+        if (id == null) id = routes.get(level);
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * Các channel cần join cho danh sách đăng ký, mỗi mục "LEVEL" (mọi topic của level)
+     * hoặc "LEVEL/topic". Danh sách rỗng = tất cả channel.
+     */
+    public Set<Integer> channelsFor(List<String> subscriptions) {
+        Set<Integer> out = new LinkedHashSet<>();
+        if (subscriptions.isEmpty()) {
+            for (int i = 0; i < channels.size(); i++) out.add(i);
+            return out;
+        }
+        for (String sub : subscriptions) {
+            String key = normalize(sub);
+            if (key.indexOf('/') >= 0) {
+                int slash = key.indexOf('/');
+                out.add(route(key.substring(0, slash), key.substring(slash + 1)));
+                continue;
+            }
+            out.add(route(key, null));
+            for (Map.Entry<String, Integer> e : routes.entrySet()) {
+                if (e.getKey().startsWith(key + "/")) out.add(e.getValue());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Bitmask các level mà danh sách đăng ký quan tâm (bit = mã level trong AlertFrame)
+     */
+    public static int levelMask(List<String> subscriptions) {
+        if (subscriptions.isEmpty()) return -1;
+        int mask = 0;
+        for (String sub : subscriptions) {
+            String level = normalize(sub);
+            int slash = level.indexOf('/');
+            if (slash >= 0) level = level.substring(0, slash);
+            mask |= 1 << AlertFrame.levelCode(level);
+        }
+        return mask;
+    }
+}
@@ -1,43 +1,42 @@
 package alert_notification;
 
+import com.sun.net.httpserver.HttpServer;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.io.IOException;
-import java.net.*;
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Client.java
+ * Giao diện Swing của client; phần mạng nằm trong ClientEngine
  * - Gửi heartbeat đều đặn tới server
- * - Nhận cảnh báo từ multicast group
- * - Hiển thị log + popup
+ * - Nhận cảnh báo từ multicast group (AlertFrame nhị phân hoặc text cũ)
+ * - Chỉ join các group của level/topic đã đăng ký (ChannelMap), vd. "ERROR,WARNING/db"
+ * - Phát hiện mất gói theo seq, gửi NAK và nhận gói gửi lại (unicast) từ server
+ * - Khi mới vào, server phát lại các cảnh báo gần đây (dòng có "⏪"); nút "Xem lại" yêu cầu phát lại lần nữa
+ * - Hiển thị log (LogRing có giới hạn, dòng cũ ghi xuống client-<id>.log)
+ * - Cảnh báo mới hiện trong panel không modal (AlertPresenter), luồng nhận không bao giờ chờ giao diện
  * - Gửi QUIT khi thoát
+ * - --headless: chạy không giao diện, sự kiện ra console / file / metrics
+ * - -Dalert.metrics.port: xuất metrics (độ trễ nhận, mất gói...) dạng Prometheus tại /metrics
  */
 public class Client extends JFrame {
 
-    private static final String MULTICAST_GROUP = "230.0.0.1";
-    private static final int SERVER_PORT = 5000;     // multicast port (must match server)
-    private static final int HEARTBEAT_PORT = 5001;  // server heartbeat listener port
-    private static final int HEARTBEAT_INTERVAL = 5; // seconds
-
-    private final String clientId;
-    private final JTextArea logArea;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
-    private MulticastSocket multicastSocket;
-
-    private static final DateTimeFormatter TIME_FMT =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private final LogView logView;
+    private final AlertPresenter presenter;
+    private final AlertJournal logSpill;
+    private final LogRing logRing;
+    private final ClientEngine engine;
+    private final HttpServer metricsExporter;
 
-    public Client(String clientId) {
+    public Client(String clientId, List<String> subscriptions) throws IOException {
         super("Client - " + clientId);
-        this.clientId = clientId;
+        this.engine = new ClientEngine(clientId, subscriptions, new SinkChain(new UiSink(), new MetricsSink()));
+        this.metricsExporter = Metrics.startExporter(Metrics.global());
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(600, 400);
@@ -49,124 +48,82 @@ public class Client extends JFrame {
         title.setBorder(new EmptyBorder(10, 10, 10, 10));
         add(title, BorderLayout.NORTH);
 
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        logArea.setLineWrap(true);
-        logArea.setWrapStyleWord(true);
-
-        JScrollPane scroll = new JScrollPane(logArea);
-        scroll.setBorder(BorderFactory.createTitledBorder("Received Alerts"));
-        add(scroll, BorderLayout.CENTER);
-
+        // Giữ N dòng gần nhất trong RAM, dòng cũ hơn ghi xuống client-<id>.log
+        logSpill = new AlertJournal(Paths.get("client-" + clientId.replaceAll("[^A-Za-z0-9._-]", "_") + ".log"),
+                4096, 256, AlertJournal.FsyncPolicy.NEVER, 0);
+        logRing = new LogRing(Integer.getInteger("alert.ui.log.lines", 10_000),
+                Long.getLong("alert.ui.log.bytes", 8L << 20), logSpill::tryAppend);
+        logView = new LogView(logRing, new Font("Monospaced", Font.PLAIN, 14));
+        logView.setBorder(BorderFactory.createTitledBorder("Received Alerts"));
+        presenter = new AlertPresenter();
+        JPanel center = new JPanel(new BorderLayout());
+        center.add(presenter, BorderLayout.NORTH);
+        center.add(logView, BorderLayout.CENTER);
+        add(center, BorderLayout.CENTER);
+
+        JButton replayBtn = new JButton("⏪ Xem lại");
+        replayBtn.setToolTipText("Yêu cầu server phát lại các cảnh báo gần đây");
+        replayBtn.addActionListener(e -> engine.requestCatchUp(0, 0));
         JButton exitBtn = new JButton("Thoát");
         exitBtn.addActionListener(e -> {
             shutdown();
             System.exit(0);
         });
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottom.add(replayBtn);
         bottom.add(exitBtn);
         add(bottom, BorderLayout.SOUTH);
 
         // Start tasks
-        startHeartbeat();
-        startReceiver();
-    }
-
-    // ====== Heartbeat ======
-    private void startHeartbeat() {
-        scheduler.scheduleAtFixedRate(() -> {
-            try (DatagramSocket socket = new DatagramSocket()) {
-                String msg = "HEARTBEAT:" + clientId;
-                byte[] data = msg.getBytes(StandardCharsets.UTF_8);
-                InetAddress serverAddr = InetAddress.getByName("127.0.0.1"); // chỉnh nếu server remote
-                DatagramPacket packet = new DatagramPacket(data, data.length, serverAddr, HEARTBEAT_PORT);
-                socket.send(packet);
-            } catch (IOException e) {
-                appendLog("⚠ Heartbeat error: " + e.getMessage(), "ERROR");
-            }
-        }, 0, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
-    }
-
-    // ====== Nhận multicast ======
-    private void startReceiver() {
-        scheduler.execute(() -> {
-            try {
-                multicastSocket = new MulticastSocket(SERVER_PORT);
-                InetAddress group = InetAddress.getByName(MULTICAST_GROUP);
-                multicastSocket.joinGroup(group);
-
-                appendLog("✅ Joined multicast group " + MULTICAST_GROUP + ":" + SERVER_PORT, "INFO");
-
-                byte[] buf = new byte[1024];
-                while (!Thread.currentThread().isInterrupted()) {
-                    DatagramPacket packet = new DatagramPacket(buf, buf.length);
-                    multicastSocket.receive(packet);
-                    String recv = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).trim();
-
-                    appendLog("📩 Received alert: " + recv, "ALERT");
-
-                    // Xử lý popup vượt cấp
-                    SwingUtilities.invokeLater(() -> showAlertPopup(recv));
-                }
-
-            } catch (IOException e) {
-                appendLog("Receiver stopped: " + e.getMessage(), "ERROR");
-            }
-        });
+        engine.start();
     }
 
-    // ====== Hiển thị popup theo cấp độ ======
-    private void showAlertPopup(String message) {
-        if (message.startsWith("[ERROR]")) {
-            JOptionPane.showMessageDialog(this, message, "🚨 ERROR Alert", JOptionPane.ERROR_MESSAGE);
-        } else if (message.startsWith("[WARNING]")) {
-            JOptionPane.showMessageDialog(this, message, "⚠ WARNING Alert", JOptionPane.WARNING_MESSAGE);
-        } else {
-            // INFO hoặc các loại khác
-            JOptionPane.showMessageDialog(this, message, "ℹ Info Alert", JOptionPane.INFORMATION_MESSAGE);
+    // ====== Sự kiện từ engine -> log + panel cảnh báo ======
+    private final class UiSink extends LineSink {
+        @Override
+        protected void line(String line) {
+            logRing.add(line);
         }
-    }
 
-    // ====== Log ======
-    private void appendLog(String msg, String type) {
-        String line = TIME_FMT.format(Instant.now()) + " [" + type + "] " + msg + "\n";
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(line);
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-        });
+        @Override
+        public void alertReceived(int level, String text, long seq, long latencyMs, boolean recovered) {
+            super.alertReceived(level, text, seq, latencyMs, recovered);
+            presenter.offer(level, text);
+        }
     }
 
     // ====== Shutdown ======
     private void shutdown() {
-        appendLog("🔻 Client shutting down...", "INFO");
-        // Gửi QUIT
-        try (DatagramSocket socket = new DatagramSocket()) {
-            String msg = "QUIT:" + clientId;
-            byte[] data = msg.getBytes(StandardCharsets.UTF_8);
-            InetAddress serverAddr = InetAddress.getByName("127.0.0.1");
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddr, HEARTBEAT_PORT);
-            socket.send(packet);
-            appendLog("Đã gửi QUIT tới server.", "QUIT");
-        } catch (IOException e) {
-            appendLog("⚠ Lỗi khi gửi QUIT: " + e.getMessage(), "ERROR");
-        }
-
-        scheduler.shutdownNow();
-        try {
-            if (multicastSocket != null) {
-                multicastSocket.leaveGroup(InetAddress.getByName(MULTICAST_GROUP));
-                multicastSocket.close();
-            }
-        } catch (IOException ignored) {
-        }
+        engine.close();
+        if (metricsExporter != null) metricsExporter.stop(0);
+        logView.stop();
+        presenter.stop();
+        logSpill.close();
     }
 
     // ====== Main ======
     public static void main(String[] args) {
+        List<String> positional = new ArrayList<>();
+        boolean headless = GraphicsEnvironment.isHeadless();
+        for (String a : args) {
+            if ("--headless".equals(a)) headless = true;
+            else positional.add(a);
+        }
+        args = positional.toArray(new String[0]);
+
+        // Đăng ký: tham số thứ 2 hoặc -Dalert.subscribe, vd. "ERROR,WARNING/db"; bỏ trống = tất cả
+        String subs = args.length > 1 ? args[1] : System.getProperty("alert.subscribe", "");
+        List<String> subscriptions = new ArrayList<>();
+        for (String sub : subs.split(",")) {
+            if (!sub.trim().isEmpty()) subscriptions.add(sub.trim());
+        }
+
         String id;
         if (args.length > 0) {
             id = args[0];
+        } else if (headless) {
+            System.err.println("Cách dùng: Client --headless <clientId> [subscriptions]");
+            return;
         } else {
             id = JOptionPane.showInputDialog(null, "Nhập Client ID:", "Client", JOptionPane.QUESTION_MESSAGE);
             if (id == null || id.trim().isEmpty()) {
@@ -176,10 +133,46 @@ public class Client extends JFrame {
         }
 
         String finalId = id.trim();
+        if (headless) {
+            runHeadless(finalId, subscriptions);
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
-            Client c = new Client(finalId);
+            Client c;
+            try {
+                c = new Client(finalId, subscriptions);
+            } catch (IOException | IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(null, "Không thể khởi tạo client: " + e.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             c.setVisible(true);
             Runtime.getRuntime().addShutdownHook(new Thread(c::shutdown));
         });
     }
+
+    /**
+     * Chạy không giao diện: sự kiện ra stdout + file (-Dalert.sink.file, mặc định client-<id>-events.log)
+     */
+    private static void runHeadless(String id, List<String> subscriptions) {
+        FileLogSink file = new FileLogSink(Paths.get(System.getProperty("alert.sink.file",
+                "client-" + id.replaceAll("[^A-Za-z0-9._-]", "_") + "-events.log")));
+        MetricsSink metrics = new MetricsSink();
+        ClientEngine engine;
+        try {
+            engine = new ClientEngine(id, subscriptions, new SinkChain(new ConsoleSink(), file, metrics));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("⚠ Không thể khởi tạo client: " + e.getMessage());
+            file.close();
+            System.exit(1);
+            return;
+        }
+        engine.start();
+        HttpServer exporter = Metrics.startExporter(Metrics.global());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            engine.close();
+            if (exporter != null) exporter.stop(0);
+            System.out.println("[METRICS] " + metrics.summary());
+            file.close();
+        }));
+    }
 }
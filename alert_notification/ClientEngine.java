@@ -0,0 +1,287 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClientEngine.java
+ * Phần mạng của client, không phụ thuộc Swing
+ * - Gửi heartbeat qua 1 socket điều khiển dùng lại suốt phiên; khoảng gửi theo HBACK của server
+ *   (server giãn khoảng khi tải cao), chưa có HBACK thì 5s; QUIT khi đóng
+ * - Join các multicast group theo đăng ký (ChannelMap), nhận AlertFrame (kể cả container nhiều cảnh báo)
+ * - Phát hiện mất gói theo seq (GapTracker), gửi NAK, nhận gói gửi lại
+ * - Nhận cảnh báo phát lại khi mới vào (CatchUpService) hoặc khi gọi requestCatchUp()
+ * - Mọi sự kiện báo qua AlertSink (giao diện popup, console, file, metrics)
+ *
+ * Địa chỉ server: -Dalert.server (mặc định 127.0.0.1)
+ */
+public class ClientEngine implements Closeable {
+
+    static final int HEARTBEAT_PORT = ServerEngine.HEARTBEAT_PORT;
+    private static final long HEARTBEAT_INTERVAL_MS = 5000; // tới khi nhận HBACK đầu tiên
+    private static final long MIN_HEARTBEAT_MS = 1000;
+    private static final long MAX_HEARTBEAT_MS = 600_000;
+    private static final int GAP_CHECK_MS = 20;
+
+    private final String clientId;
+    private final AlertSink sink;
+    private final InetAddress serverAddr;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Integer, List<InetAddress>> groupsByPort = new LinkedHashMap<>();
+    private final int levelMask;
+    private final boolean[] subscribed; // theo channel
+    private final List<MulticastSocket> multicastSockets = new CopyOnWriteArrayList<>();
+    private DatagramSocket controlSocket; // heartbeat, NAK, CATCHUP + nhận gói gửi lại / phát lại
+    private final Map<Integer, GapTracker> gaps = new ConcurrentHashMap<>(); // theo channel
+    private volatile boolean closed;
+    private volatile long heartbeatMs = HEARTBEAT_INTERVAL_MS;
+
+    public ClientEngine(String clientId, List<String> subscriptions, AlertSink sink) throws IOException {
+        this.clientId = clientId;
+        this.sink = sink;
+        this.serverAddr = InetAddress.getByName(System.getProperty("alert.server", "127.0.0.1"));
+        ChannelMap channelMap = ChannelMap.fromSystemProperties();
+        this.levelMask = ChannelMap.levelMask(subscriptions);
+        this.subscribed = new boolean[channelMap.size()];
+        for (int c : channelMap.channelsFor(subscriptions)) {
+            subscribed[c] = true;
+            InetSocketAddress a = channelMap.address(c);
+            groupsByPort.computeIfAbsent(a.getPort(), k -> new ArrayList<>()).add(a.getAddress());
+        }
+        // heartbeat + kiểm tra gap + nhận repair + 1 luồng nhận cho mỗi port multicast
+        this.scheduler = Executors.newScheduledThreadPool(3 + groupsByPort.size());
+    }
+
+    public String clientId() {
+        return clientId;
+    }
+
+    public void start() {
+        // Mở socket điều khiển trước heartbeat đầu tiên: server phát lại cảnh báo gần đây về địa chỉ này
+        startRepairReceiver();
+        startReceiver();
+        startHeartbeat();
+    }
+
+    // ====== Heartbeat ======
+    private void startHeartbeat() {
+        // Báo server client này đọc được container (AlertFrame.FLAG_BATCH) và làm theo HBACK
+        // kèm level đăng ký để cảnh báo phát lại khi vào chỉ gồm các level đó
+        int caps = ClientRegistry.withLevels(ClientRegistry.CAP_BATCH | ClientRegistry.CAP_HBACK, levelMask);
+        byte[] data = ("HBC:" + caps + ":" + clientId).getBytes(StandardCharsets.UTF_8);
+        scheduleHeartbeat(data, 0);
+    }
+
+    /** Tự hẹn lần kế tiếp theo heartbeatMs hiện tại (có thể vừa được HBACK đổi) */
+    private void scheduleHeartbeat(byte[] data, long delayMs) {
+        if (closed) return;
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    sendControl(data);
+                } catch (IOException e) {
+                    sink.log("ERROR", "⚠ Heartbeat error: " + e.getMessage());
+                }
+                scheduleHeartbeat(data, heartbeatMs);
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // scheduler đã dừng (close)
+        }
+    }
+
+    /** "HBACK:<ms>:<clientId>" từ server */
+    private boolean onHeartbeatAck(byte[] b, int len) {
+        byte[] prefix = HeartbeatIngest.HBACK;
+        if (len <= prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[i] != prefix[i]) return false;
+        }
+        long ms = 0;
+        for (int i = prefix.length; i < len && b[i] >= '0' && b[i] <= '9'; i++) ms = ms * 10 + (b[i] - '0');
+        if (ms > 0) heartbeatMs = Math.max(MIN_HEARTBEAT_MS, Math.min(MAX_HEARTBEAT_MS, ms));
+        return true;
+    }
+
+    public long heartbeatMs() {
+        return heartbeatMs;
+    }
+
+    private void sendControl(byte[] data) throws IOException {
+        DatagramPacket p = new DatagramPacket(data, data.length, serverAddr, HEARTBEAT_PORT);
+        if (controlSocket != null) {
+            controlSocket.send(p);
+            return;
+        }
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(p);
+        }
+    }
+
+    // ====== Phát lại cảnh báo gần đây ======
+    /**
+     * Yêu cầu server phát lại cảnh báo gần đây (chỉ các level đã đăng ký)
+     * @param maxAlerts 0 = mặc định của server
+     * @param sinceMs   epoch millis, 0 = mặc định của server
+     */
+    public void requestCatchUp(int maxAlerts, long sinceMs) {
+        String msg = "CATCHUP:" + levelMask + ":" + maxAlerts + ":" + sinceMs + ":" + clientId;
+        try {
+            sendControl(msg.getBytes(StandardCharsets.UTF_8));
+            sink.log("INFO", "⏪ Đã yêu cầu phát lại cảnh báo gần đây");
+        } catch (IOException e) {
+            sink.log("ERROR", "⚠ Lỗi khi gửi CATCHUP: " + e.getMessage());
+        }
+    }
+
+    // ====== Nhận multicast ======
+    private void startReceiver() {
+        for (Map.Entry<Integer, List<InetAddress>> e : groupsByPort.entrySet()) {
+            int port = e.getKey();
+            scheduler.execute(() -> {
+                try {
+                    MulticastSocket socket = new MulticastSocket(port);
+                    multicastSockets.add(socket);
+                    for (InetAddress group : e.getValue()) {
+                        // null = interface mặc định; joinGroup(InetAddress) đã deprecated
+                        socket.joinGroup(new InetSocketAddress(group, port), null);
+                        sink.log("INFO", "✅ Joined multicast group " + group.getHostAddress() + ":" + port);
+                    }
+                    receiveLoop(socket);
+                } catch (IOException ex) {
+                    if (!closed) sink.log("ERROR", "Receiver stopped: " + ex.getMessage());
+                }
+            });
+        }
+    }
+
+    // ====== Gói gửi lại (repair) + NAK ======
+    private void startRepairReceiver() {
+        try {
+            controlSocket = new DatagramSocket();
+        } catch (SocketException e) {
+            sink.log("ERROR", "⚠ Không mở được socket NAK: " + e.getMessage());
+            return;
+        }
+        scheduler.execute(() -> {
+            try {
+                receiveLoop(controlSocket);
+            } catch (IOException e) {
+                if (!closed) sink.log("ERROR", "Repair receiver stopped: " + e.getMessage());
+            }
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            long now = System.currentTimeMillis();
+            for (GapTracker g : gaps.values()) {
+                int lost = g.tick(now, this::sendNak);
+                if (lost > 0) sink.alertsLost(lost);
+            }
+        }, GAP_CHECK_MS, GAP_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendNak(int channel, int epoch, long from, long to) {
+        String msg = "NAK:" + clientId + ":" + epoch + ":" + channel + ":" + from + "-" + to;
+        byte[] data = msg.getBytes(StandardCharsets.UTF_8);
+        try {
+            controlSocket.send(new DatagramPacket(data, data.length, serverAddr, HEARTBEAT_PORT));
+            sink.log("NAK", "↩ NAK #" + from + (to > from ? "-" + to : ""));
+        } catch (IOException e) {
+            sink.log("ERROR", "⚠ Lỗi khi gửi NAK: " + e.getMessage());
+        }
+    }
+
+    // ====== Vòng nhận chung cho multicast và repair ======
+    private void receiveLoop(DatagramSocket socket) throws IOException {
+        byte[] buf = new byte[AlertFrame.MAX_DATAGRAM];
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        AlertFrame frame = new AlertFrame();
+        while (!Thread.currentThread().isInterrupted()) {
+            packet.setLength(buf.length);
+            socket.receive(packet);
+            if (onHeartbeatAck(buf, packet.getLength())) continue;
+            bb.clear();
+            bb.limit(packet.getLength());
+            if (!frame.decode(bb)) {
+                sink.log("ERROR", "⚠ Bỏ qua gói tin không hợp lệ (" + packet.getLength() + " bytes)");
+                continue;
+            }
+            if (frame.isBatch()) {
+                int end = frame.batchEnd();
+                for (int p = frame.batchStart(); (p = frame.decodeNext(bb, p, end)) >= 0; ) handleFrame(frame);
+                continue;
+            }
+            handleFrame(frame);
+        }
+    }
+
+    private void handleFrame(AlertFrame frame) {
+        int level = frame.level;
+        // Cùng port có thể nhận cả group không đăng ký (IP_MULTICAST_ALL mặc định bật trên Linux):
+        // lọc theo header trước cả GapTracker / NAK; body chỉ được decode khi GapTracker nhận frame
+        // (bản trùng / gói gửi lại đã có không tốn decode UTF-8)
+        if (frame.legacy) {
+            if ((levelMask & (1 << level)) == 0) return;
+            sink.alertReceived(level, frame.toText().trim(), -1, -1, false);
+            return;
+        }
+        if (frame.channel < 0 || frame.channel >= subscribed.length || !subscribed[frame.channel]) return;
+        GapTracker g = gaps.computeIfAbsent(frame.channel, GapTracker::fromSystemProperties);
+        if (frame.isReplay()) {
+            // Cảnh báo gửi trước khi client vào: không tính độ trễ, không ảnh hưởng phát hiện mất gói
+            if (g.onReplay(frame.epoch, frame.seq)) {
+                sink.alertReceived(level, "⏪ " + frame.toText().trim(), frame.seq, -1, false);
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        GapTracker.Result r = g.onFrame(frame.epoch, frame.seq, now);
+        if (r == GapTracker.Result.DUPLICATE) return;
+        sink.alertReceived(level, frame.toText().trim(), frame.seq, now - frame.timestamp,
+                r == GapTracker.Result.RECOVERED);
+    }
+
+    // ====== Shutdown ======
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        sink.log("INFO", "🔻 Client shutting down...");
+        // Gửi QUIT
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] data = ("QUIT:" + clientId).getBytes(StandardCharsets.UTF_8);
+            socket.send(new DatagramPacket(data, data.length, serverAddr, HEARTBEAT_PORT));
+            sink.log("QUIT", "Đã gửi QUIT tới server.");
+        } catch (IOException e) {
+            sink.log("ERROR", "⚠ Lỗi khi gửi QUIT: " + e.getMessage());
+        }
+
+        scheduler.shutdownNow();
+        if (controlSocket != null) controlSocket.close();
+        for (MulticastSocket socket : multicastSockets) {
+            try {
+                int port = socket.getLocalPort();
+                for (InetAddress group : groupsByPort.get(port)) socket.leaveGroup(new InetSocketAddress(group, port), null);
+            } catch (IOException ignored) {
+            }
+            socket.close();
+        }
+    }
+}
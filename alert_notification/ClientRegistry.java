@@ -0,0 +1,355 @@
+package alert_notification;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * ClientRegistry.java
+ * Danh sách client gọn cho số lượng lớn (hàng trăm nghìn sensor)
+ * - Client ID -> slot int qua bảng băm địa chỉ mở (không có object riêng cho từng client)
+ * - IP (IPv6, IPv4 lưu dạng ::ffff:a.b.c.d) + port + lastSeen nằm trong mảng nguyên thủy theo slot
+ * - Heartbeat của client đã biết cập nhật tại chỗ, không cấp phát
+ * - Hết hạn bằng TimingWheel trên chính slot; slot được tái sử dụng sau QUIT/timeout
+ * - Ghi nhớ khả năng client báo trong heartbeat (CAP_*) và đếm số client thiếu CAP_BATCH
+ * - Timeout theo từng client (khoảng heartbeat server đã khuyên), mặc định timeoutMs
+ * - writeTo/readFrom: dạng nhị phân gọn cho ServerSnapshot (khởi động lại không mất danh sách client)
+ *
+ * Mọi thao tác đồng bộ trên registry.
+ */
+public class ClientRegistry {
+
+    /** Client decode được container AlertFrame.FLAG_BATCH */
+    public static final int CAP_BATCH = 1;
+    /** Client đọc HBACK và gửi heartbeat theo khoảng server khuyên */
+    public static final int CAP_HBACK = 2;
+    /** Từ bit LEVELS_SHIFT trở lên là bitmask level client đăng ký (bit = mã level trong AlertFrame) */
+    public static final int CAP_LEVELS = 4;
+    private static final int LEVELS_SHIFT = 8;
+
+    private static final int EMPTY = -1;
+
+    private final long timeoutMs;
+    private final TimingWheel expiry;
+
+    // Bảng băm id -> slot (dò tuyến tính)
+    private int[] table;
+    private int tableMask;
+
+    // Dữ liệu theo slot
+    private String[] ids;
+    private long[] ipHi;
+    private long[] ipLo;
+    private int[] ipHash;   // hashCode của InetAddress gần nhất, để biết IP có đổi mà không cần getAddress()
+    private int[] ports;
+    private long[] lastSeen;
+    private int[] caps;
+    private int[] timeouts; // timeout của lần heartbeat trước (ms), 0 = mặc định
+    private int withoutBatch; // số client chưa báo CAP_BATCH
+
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int nextSlot;
+    private int size;
+
+    private final IntConsumer onExpired = this::release;
+    private List<String> expiredOut;
+
+    public ClientRegistry(long timeoutMs, long tickMs, int capacity) {
+        this.timeoutMs = timeoutMs;
+        int cap = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.expiry = new TimingWheel(tickMs, timeoutMs, cap, System.currentTimeMillis());
+        this.table = new int[cap * 2];
+        this.tableMask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+        this.ids = new String[cap];
+        this.ipHi = new long[cap];
+        this.ipLo = new long[cap];
+        this.ipHash = new int[cap];
+        this.ports = new int[cap];
+        this.lastSeen = new long[cap];
+        this.caps = new int[cap];
+        this.timeouts = new int[cap];
+    }
+
+    /** Gắn bitmask level đăng ký vào caps gửi trong heartbeat */
+    public static int withLevels(int capabilities, int levelMask) {
+        return capabilities | CAP_LEVELS | (levelMask & 0xFF) << LEVELS_SHIFT;
+    }
+
+    /** Bitmask level đăng ký trong caps, -1 nếu client không báo (client cũ) */
+    public static int levelsOf(int capabilities) {
+        return (capabilities & CAP_LEVELS) == 0 ? -1 : capabilities >>> LEVELS_SHIFT & 0xFF;
+    }
+
+    public long timeoutMs() {
+        return timeoutMs;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Ghi nhận heartbeat
+     * @return true nếu là client mới (join)
+     */
+    public boolean heartbeat(String id, InetSocketAddress from, long now) {
+        return touch(id, 0, from, now) < 0;
+    }
+
+    /**
+     * Như heartbeat() nhưng trả về khoảng cách tới heartbeat trước (dùng đo jitter)
+     * @param capabilities các bit CAP_* client báo trong heartbeat
+     * @return số ms kể từ heartbeat trước, -1 nếu là client mới (join)
+     */
+    public long touch(String id, int capabilities, InetSocketAddress from, long now) {
+        return touch(id, capabilities, from, now, timeoutMs);
+    }
+
+    /**
+     * Như touch() với timeout riêng cho lần này. Hạn chót lấy timeout lớn hơn giữa lần này và lần trước:
+     * nếu client không nhận được khoảng mới (mất HBACK) thì nó vẫn gửi theo khoảng cũ.
+     */
+    public synchronized long touch(String id, int capabilities, InetSocketAddress from, long now, long timeout) {
+        int slot = slotOf(id);
+        boolean joined = slot < 0;
+        if (joined) {
+            slot = add(id);
+            caps[slot] = capabilities;
+            timeouts[slot] = 0;
+            if ((capabilities & CAP_BATCH) == 0) withoutBatch++;
+        } else if (caps[slot] != capabilities) {
+            withoutBatch += ((caps[slot] & CAP_BATCH) != 0 ? 1 : 0) - ((capabilities & CAP_BATCH) != 0 ? 1 : 0);
+            caps[slot] = capabilities;
+        }
+        long since = joined ? -1 : Math.max(0, now - lastSeen[slot]);
+        InetAddress addr = from.getAddress();
+        int h = addr.hashCode();
+        if (joined || ipHash[slot] != h) {
+            setIp(slot, addr.getAddress());
+            ipHash[slot] = h;
+        }
+        ports[slot] = from.getPort();
+        lastSeen[slot] = now;
+        int t = (int) Math.min(Integer.MAX_VALUE, timeout);
+        expiry.schedule(slot, now + Math.max(t, timeouts[slot]));
+        timeouts[slot] = t;
+        return since;
+    }
+
+    /**
+     * Client gửi QUIT
+     * @return false nếu không có client này
+     */
+    public synchronized boolean remove(String id) {
+        int slot = slotOf(id);
+        if (slot < 0) return false;
+        expiry.cancel(slot);
+        release(slot);
+        return true;
+    }
+
+    /**
+     * Gỡ các client đã hết hạn tới thời điểm now, thêm ID của chúng vào out
+     * @return số client hết hạn
+     */
+    public synchronized int expire(long now, List<String> out) {
+        expiredOut = out;
+        try {
+            return expiry.advance(now, onExpired);
+        } finally {
+            expiredOut = null;
+        }
+    }
+
+    // ===== Snapshot =====
+
+    /**
+     * Ghi mọi client: chỉ chép mảng trong khóa, phần ghi chạy ngoài khóa để không chặn heartbeat
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        String[] id;
+        long[] hi, lo, seen;
+        int[] port, cap;
+        int n;
+        synchronized (this) {
+            n = size;
+            id = Arrays.copyOf(ids, nextSlot);
+            hi = Arrays.copyOf(ipHi, nextSlot);
+            lo = Arrays.copyOf(ipLo, nextSlot);
+            port = Arrays.copyOf(ports, nextSlot);
+            seen = Arrays.copyOf(lastSeen, nextSlot);
+            cap = Arrays.copyOf(caps, nextSlot);
+        }
+        out.writeInt(n);
+        for (int s = 0; s < id.length; s++) {
+            if (id[s] == null) continue;
+            out.writeUTF(id[s]);
+            out.writeLong(hi[s]);
+            out.writeLong(lo[s]);
+            out.writeShort(port[s]);
+            out.writeLong(seen[s]);
+            out.writeInt(cap[s]);
+        }
+    }
+
+    /**
+     * Nạp lại client từ snapshot chụp lúc takenAt. Thời gian server ngừng không tính vào timeout:
+     * client còn hạn lúc chụp được giữ đúng phần hạn còn lại kể từ now.
+     * @param restored nhận ID các client được nạp
+     * @return số client được nạp
+     */
+    public synchronized int readFrom(DataInput in, long takenAt, long now, List<String> restored) throws IOException {
+        int n = in.readInt();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            String id = in.readUTF();
+            long hi = in.readLong();
+            long lo = in.readLong();
+            int port = in.readUnsignedShort();
+            long seen = in.readLong();
+            int cap = in.readInt();
+            long remaining = seen + timeoutMs - takenAt;
+            if (remaining <= 0 || slotOf(id) >= 0) continue;
+            int slot = add(id);
+            ipHi[slot] = hi;
+            ipLo[slot] = lo;
+            ipHash[slot] = 0; // heartbeat kế tiếp sẽ ghi lại IP
+            ports[slot] = port;
+            lastSeen[slot] = now + remaining - timeoutMs;
+            caps[slot] = cap;
+            timeouts[slot] = 0;
+            if ((cap & CAP_BATCH) == 0) withoutBatch++;
+            expiry.schedule(slot, now + remaining);
+            restored.add(id);
+            count++;
+        }
+        return count;
+    }
+
+    /** Slot của client, -1 nếu không có */
+    public synchronized int slotOf(String id) {
+        int i = hash(id) & tableMask;
+        for (int s; (s = table[i]) != EMPTY; i = (i + 1) & tableMask) {
+            if (ids[s].equals(id)) return s;
+        }
+        return -1;
+    }
+
+    public synchronized boolean contains(String id) {
+        return slotOf(id) >= 0;
+    }
+
+    /** true nếu mọi client đang có đều đã báo CAP_BATCH (và có ít nhất 1 client) */
+    public synchronized boolean allSupportBatch() {
+        return size > 0 && withoutBatch == 0;
+    }
+
+    public synchronized int port(int slot) {
+        return ports[slot];
+    }
+
+    public synchronized long lastSeen(int slot) {
+        return lastSeen[slot];
+    }
+
+    /** IP dạng chuỗi, chỉ tạo khi cần hiển thị */
+    public synchronized String ip(int slot) {
+        byte[] b = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            b[i] = (byte) (ipHi[slot] >>> (56 - 8 * i));
+            b[8 + i] = (byte) (ipLo[slot] >>> (56 - 8 * i));
+        }
+        try {
+            // InetAddress tự trả Inet4Address cho dạng ::ffff:a.b.c.d
+            return InetAddress.getByAddress(b).getHostAddress();
+        } catch (UnknownHostException e) {
+            return "?";
+        }
+    }
+
+    private void setIp(int slot, byte[] a) {
+        long hi = 0, lo = 0;
+        if (a.length == 4) {
+            lo = 0xFFFF00000000L | ((a[0] & 0xFFL) << 24) | ((a[1] & 0xFFL) << 16) | ((a[2] & 0xFFL) << 8) | (a[3] & 0xFFL);
+        } else {
+            for (int i = 0; i < 8; i++) {
+                hi = (hi << 8) | (a[i] & 0xFF);
+                lo = (lo << 8) | (a[8 + i] & 0xFF);
+            }
+        }
+        ipHi[slot] = hi;
+        ipLo[slot] = lo;
+    }
+
+    private int add(String id) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot >= ids.length) growSlots(ids.length * 2);
+        ids[slot] = id;
+        size++;
+        if (size * 2 > table.length) rehash(table.length * 2);
+        else insert(slot);
+        return slot;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void insert(int slot) {
+        int i = hash(ids[slot]) & tableMask;
+        while (table[i] != EMPTY) i = (i + 1) & tableMask;
+        table[i] = slot;
+    }
+
+    /** Gỡ slot khỏi bảng băm (xóa dịch lùi, không để lại tombstone) và trả slot về danh sách rỗi */
+    private void release(int slot) {
+        String id = ids[slot];
+        int i = hash(id) & tableMask;
+        while (table[i] != slot) i = (i + 1) & tableMask;
+        table[i] = EMPTY;
+        for (int j = (i + 1) & tableMask; table[j] != EMPTY; j = (j + 1) & tableMask) {
+            int home = hash(ids[table[j]]) & tableMask;
+            // Dời phần tử j về i nếu vị trí gốc của nó không nằm trong (i, j]
+            if (((j - home) & tableMask) >= ((j - i) & tableMask)) {
+                table[i] = table[j];
+                table[j] = EMPTY;
+                i = j;
+            }
+        }
+        if (expiredOut != null) expiredOut.add(id);
+        if ((caps[slot] & CAP_BATCH) == 0) withoutBatch--;
+        ids[slot] = null;
+        size--;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void rehash(int cap) {
+        table = new int[cap];
+        tableMask = cap - 1;
+        Arrays.fill(table, EMPTY);
+        for (int s = 0; s < nextSlot; s++) {
+            if (ids[s] != null) insert(s);
+        }
+    }
+
+    private void growSlots(int cap) {
+        ids = Arrays.copyOf(ids, cap);
+        ipHi = Arrays.copyOf(ipHi, cap);
+        ipLo = Arrays.copyOf(ipLo, cap);
+        ipHash = Arrays.copyOf(ipHash, cap);
+        ports = Arrays.copyOf(ports, cap);
+        lastSeen = Arrays.copyOf(lastSeen, cap);
+        caps = Arrays.copyOf(caps, cap);
+        timeouts = Arrays.copyOf(timeouts, cap);
+    }
+}
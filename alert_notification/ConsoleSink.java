@@ -0,0 +1,13 @@
+package alert_notification;
+
+/**
+ * ConsoleSink.java
+ * In sự kiện ra stdout (chế độ --headless)
+ */
+public class ConsoleSink extends LineSink {
+
+    @Override
+    protected void line(String line) {
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,32 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+
+/**
+ * FileLogSink.java
+ * Ghi sự kiện xuống file qua AlertJournal (bất đồng bộ, không chặn luồng mạng)
+ * - Hàng đợi đầy thì bỏ dòng (đếm trong journal.failedRecords)
+ */
+public class FileLogSink extends LineSink implements Closeable {
+
+    private final AlertJournal journal;
+
+    public FileLogSink(Path file) {
+        this.journal = new AlertJournal(file, 8192, 256, AlertJournal.FsyncPolicy.NEVER, 0);
+    }
+
+    @Override
+    protected void line(String line) {
+        journal.tryAppend(line);
+    }
+
+    public long dropped() {
+        return journal.failedRecords();
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+}
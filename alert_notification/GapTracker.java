@@ -0,0 +1,207 @@
+package alert_notification;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * GapTracker.java
+ * Theo dõi seq cảnh báo phía Client (1 tracker cho mỗi channel multicast)
+ * - Phát hiện khoảng trống seq (mất gói) và gói trùng lặp
+ * - Chờ 1 khoảng ngẫu nhiên trước khi NAK (tránh NAK thừa khi gói chỉ đến trễ)
+ * - Gửi lại NAK định kỳ tới khi nhận được hoặc quá số lần thử thì tính là mất
+ * - Cũng tính là mất: khoảng trống vượt cửa sổ, khoảng trống còn chờ khi sang epoch mới;
+ *   mọi seq mất được báo qua tick() đúng 1 lần
+ * - Seq của epoch server mới thì bắt đầu đếm lại
+ * - Frame phát lại (FLAG_REPLAY) chỉ được khử trùng lặp, không mở khoảng trống mới
+ *
+ * Cấu hình (fromSystemProperties, phía client):
+ * - alert.gap.window = số seq nhớ để khử trùng lặp / NAK (mặc định alert.retransmit.ring hoặc 4096,
+ *   nên bằng vòng đệm gửi lại của server)
+ * - alert.nak.delayMinMs, alert.nak.delayMaxMs = khoảng chờ ngẫu nhiên trước NAK đầu (mặc định 10, 50)
+ * - alert.nak.retryMs = chu kỳ gửi lại NAK (mặc định 250)
+ * - alert.nak.maxAttempts = số lần NAK trước khi tính là mất (mặc định 8)
+ */
+public class GapTracker {
+
+    public enum Result { NEW, RECOVERED, DUPLICATE }
+
+    public interface NakSender {
+        void sendNak(int channel, int epoch, long fromSeq, long toSeq);
+    }
+
+    private static final class Pending {
+        long due;
+        int attempts;
+    }
+
+    private final int channel;
+    private final int mask;
+    private final long[] seen;
+    private final long nakDelayMinMs;
+    private final long nakDelayMaxMs;
+    private final long retryMs;
+    private final int maxAttempts;
+
+    private int epoch;
+    private long maxSeq = -1;
+    private final TreeMap<Long, Pending> missing = new TreeMap<>();
+
+    private long received, duplicates, gaps, recovered, lost;
+    private long lostReported; // phần của lost đã trả về qua tick()
+
+    public GapTracker(int channel, int window, long nakDelayMinMs, long nakDelayMaxMs, long retryMs, int maxAttempts) {
+        this.channel = channel;
+        int cap = Integer.highestOneBit(Math.max(2, window - 1)) << 1;
+        this.mask = cap - 1;
+        this.seen = new long[cap];
+        Arrays.fill(seen, -1);
+        this.nakDelayMinMs = nakDelayMinMs;
+        this.nakDelayMaxMs = Math.max(nakDelayMinMs, nakDelayMaxMs);
+        this.retryMs = retryMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public static GapTracker fromSystemProperties(int channel) {
+        return new GapTracker(channel,
+                Integer.getInteger("alert.gap.window", Integer.getInteger("alert.retransmit.ring", 4096)),
+                Long.getLong("alert.nak.delayMinMs", 10L),
+                Long.getLong("alert.nak.delayMaxMs", 50L),
+                Long.getLong("alert.nak.retryMs", 250L),
+                Integer.getInteger("alert.nak.maxAttempts", 8));
+    }
+
+    public synchronized Result onFrame(int frameEpoch, long seq, long now) {
+        if (maxSeq < 0 || frameEpoch > epoch) {
+            // Lần đầu hoặc server đã khởi động lại: bắt đầu từ seq này
+            // (giữ lại các seq đã nhận qua phát lại nếu cùng epoch)
+            boolean replayed = frameEpoch == epoch && seen[(int) (seq & mask)] == seq;
+            if (frameEpoch != epoch) Arrays.fill(seen, -1);
+            epoch = frameEpoch;
+            maxSeq = seq;
+            lost += missing.size(); // seq của epoch cũ không còn sửa được
+            missing.clear();
+            markSeen(seq);
+            if (replayed) {
+                duplicates++;
+                return Result.DUPLICATE;
+            }
+            received++;
+            return Result.NEW;
+        }
+        if (frameEpoch < epoch) {
+            duplicates++;
+            return Result.DUPLICATE;
+        }
+
+        if (seq > maxSeq) {
+            long from = Math.max(maxSeq + 1, seq - mask);
+            lost += from - (maxSeq + 1);
+            for (long s = from; s < seq; s++) {
+                if (seen[(int) (s & mask)] == s) continue; // đã có qua phát lại
+                Pending p = new Pending();
+                p.due = now + randomDelay();
+                missing.put(s, p);
+                gaps++;
+            }
+            // Giữ số seq đang chờ trong giới hạn cửa sổ
+            while (missing.size() > mask + 1) {
+                missing.pollFirstEntry();
+                lost++;
+            }
+            maxSeq = seq;
+            if (seen[(int) (seq & mask)] == seq) {
+                duplicates++;
+                return Result.DUPLICATE;
+            }
+            markSeen(seq);
+            received++;
+            return Result.NEW;
+        }
+
+        if (missing.remove(seq) != null) {
+            markSeen(seq);
+            received++;
+            recovered++;
+            return Result.RECOVERED;
+        }
+        if (seen[(int) (seq & mask)] == seq) {
+            duplicates++;
+            return Result.DUPLICATE;
+        }
+        // Đến rất trễ (đã bị tính là mất hoặc nằm ngoài cửa sổ): vẫn hiển thị
+        markSeen(seq);
+        received++;
+        return Result.NEW;
+    }
+
+    /**
+     * Frame phát lại cho client mới vào: seq cũ hơn lần đầu nhận không phải là mất gói
+     * @return false nếu đã nhận bản này qua multicast / repair / lần phát lại trước
+     */
+    public synchronized boolean onReplay(int frameEpoch, long seq) {
+        if (seq < 0) return true; // dòng nạp lại từ alerts.log: không có seq để so
+        if (maxSeq < 0 && frameEpoch != epoch) {
+            epoch = frameEpoch;
+            Arrays.fill(seen, -1);
+        }
+        if (frameEpoch != epoch) return true; // epoch trước khi server khởi động lại
+        if (seen[(int) (seq & mask)] == seq) {
+            duplicates++;
+            return false;
+        }
+        if (missing.remove(seq) != null) recovered++;
+        markSeen(seq);
+        received++;
+        return true;
+    }
+
+    /**
+     * Gửi NAK cho các seq tới hạn, gộp các seq liên tiếp thành 1 khoảng.
+     * @return số seq bị tính là mất kể từ lần gọi trước (bỏ cuộc, vượt cửa sổ, epoch mới)
+     */
+    public synchronized int tick(long now, NakSender out) {
+        long rangeFrom = -1, rangeTo = -1;
+        Iterator<Map.Entry<Long, Pending>> it = missing.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Pending> e = it.next();
+            Pending p = e.getValue();
+            if (p.due > now) continue;
+            if (p.attempts >= maxAttempts) {
+                it.remove();
+                lost++;
+                continue;
+            }
+            p.attempts++;
+            p.due = now + retryMs;
+            long s = e.getKey();
+            if (rangeFrom >= 0 && s == rangeTo + 1 && s - rangeFrom < RepairService.MAX_NAK_RANGE) {
+                rangeTo = s;
+            } else {
+                if (rangeFrom >= 0) out.sendNak(channel, epoch, rangeFrom, rangeTo);
+                rangeFrom = rangeTo = s;
+            }
+        }
+        if (rangeFrom >= 0) out.sendNak(channel, epoch, rangeFrom, rangeTo);
+        int newlyLost = (int) (lost - lostReported);
+        lostReported = lost;
+        return newlyLost;
+    }
+
+    private void markSeen(long seq) {
+        seen[(int) (seq & mask)] = seq;
+    }
+
+    private long randomDelay() {
+        return nakDelayMinMs + ThreadLocalRandom.current().nextLong(nakDelayMaxMs - nakDelayMinMs + 1);
+    }
+
+    public synchronized long received() { return received; }
+    public synchronized long duplicates() { return duplicates; }
+    public synchronized long gaps() { return gaps; }
+    public synchronized long recovered() { return recovered; }
+    public synchronized long lost() { return lost; }
+    public synchronized int pending() { return missing.size(); }
+}
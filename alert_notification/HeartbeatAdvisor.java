@@ -0,0 +1,102 @@
+package alert_notification;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HeartbeatAdvisor.java
+ * Tính khoảng heartbeat server khuyên client dùng (gửi trong HBACK) để tải heartbeat có giới hạn
+ * - Mục tiêu tổng heartbeat/giây ~ targetRate bất kể số client: interval = số client / targetRate
+ * - Hiệu chỉnh theo tải đo được trên cổng ingest (gồm cả client cũ không theo HBACK, NAK...) trong cửa sổ
+ *   ít nhất 1 khoảng heartbeat: vượt targetRate thì giãn interval theo đúng tỉ lệ vượt
+ * - Kẹp trong [minMs, maxMs]; mỗi lần cập nhật chỉ đổi tối đa x2 hoặc /2 để không dao động
+ * - Mỗi lần trả lời cộng jitter ngẫu nhiên ±jitter để heartbeat các client không dồn về cùng thời điểm
+ * - Timeout của client = missFactor x khoảng đã khuyên, không nhỏ hơn timeout cấu hình
+ *
+ * Cấu hình (fromSystemProperties):
+ * - alert.heartbeat.minMs / maxMs = giới hạn khoảng khuyên dùng (mặc định 5000 / 60000)
+ * - alert.heartbeat.targetRate = tổng heartbeat/giây mong muốn (mặc định 1000)
+ * - alert.heartbeat.jitter = biên độ jitter tương đối (mặc định 0.1)
+ * - alert.heartbeat.missFactor = số khoảng được lỡ trước khi tính là timeout (mặc định 3)
+ */
+public class HeartbeatAdvisor {
+
+    private final long minMs;
+    private final long maxMs;
+    private final double targetRate;
+    private final double jitter;
+    private final double missFactor;
+    private final long baseTimeoutMs;
+
+    private volatile long advisedMs;
+    private long lastPackets = -1;
+    private long lastNanos;
+    private double measuredRate;
+
+    public HeartbeatAdvisor(long minMs, long maxMs, double targetRate, double jitter, double missFactor,
+                            long baseTimeoutMs) {
+        this.minMs = Math.max(100, minMs);
+        this.maxMs = Math.max(this.minMs, maxMs);
+        this.targetRate = Math.max(1, targetRate);
+        this.jitter = Math.min(0.5, Math.max(0, jitter));
+        this.missFactor = Math.max(1.5, missFactor);
+        this.baseTimeoutMs = baseTimeoutMs;
+        this.advisedMs = this.minMs;
+    }
+
+    public static HeartbeatAdvisor fromSystemProperties(long baseTimeoutMs) {
+        return new HeartbeatAdvisor(
+                Long.getLong("alert.heartbeat.minMs", 5000L),
+                Long.getLong("alert.heartbeat.maxMs", 60_000L),
+                Double.parseDouble(System.getProperty("alert.heartbeat.targetRate", "1000")),
+                Double.parseDouble(System.getProperty("alert.heartbeat.jitter", "0.1")),
+                Double.parseDouble(System.getProperty("alert.heartbeat.missFactor", "3")),
+                baseTimeoutMs);
+    }
+
+    /**
+     * Cập nhật khoảng khuyên dùng, gọi định kỳ (vd. mỗi giây) từ 1 luồng
+     * @param packets tổng số gói ingest đã nhận (bộ đếm tăng dần)
+     */
+    public synchronized void update(int clients, long packets, long nowNanos) {
+        long cur = advisedMs;
+        boolean measured = false;
+        if (lastPackets < 0) {
+            lastPackets = packets;
+            lastNanos = nowNanos;
+        } else if (nowNanos - lastNanos >= cur * 1_000_000L) {
+            // Đo trên cả 1 khoảng heartbeat: đo ngắn hơn sẽ bắt nhầm các đợt dồn cục thành quá tải
+            measuredRate = (packets - lastPackets) * 1e9 / (nowNanos - lastNanos);
+            lastPackets = packets;
+            lastNanos = nowNanos;
+            measured = true;
+        }
+
+        double want = clients * 1000.0 / targetRate;
+        if (!measured) want = Math.max(want, cur); // giữa 2 lần đo chỉ giãn theo số client, không co lại
+        else if (measuredRate > targetRate) want = Math.max(want, cur * measuredRate / targetRate);
+        want = Math.max(minMs, Math.min(maxMs, want));
+        want = Math.max(cur / 2.0, Math.min(cur * 2.0, want));
+        advisedMs = Math.round(want);
+    }
+
+    /** Khoảng khuyên dùng hiện tại, chưa có jitter */
+    public long advisedMs() {
+        return advisedMs;
+    }
+
+    public synchronized double measuredRate() {
+        return measuredRate;
+    }
+
+    /** Khoảng gửi cho 1 client trong lần trả lời này (đã cộng jitter) */
+    public int next() {
+        long a = advisedMs;
+        double f = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (int) Math.max(minMs / 2, Math.round(a * f));
+    }
+
+    /** Timeout cho client vừa được khuyên intervalMs */
+    public long timeoutFor(long intervalMs) {
+        return Math.max(baseTimeoutMs, Math.round(intervalMs * missFactor));
+    }
+}
@@ -0,0 +1,370 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HeartbeatIngest.java
+ * Nhận HEARTBEAT / QUIT / NAK / CATCHUP từ client bằng NIO, không chặn
+ * - N DatagramChannel cùng bind 1 port bằng SO_REUSEPORT (kernel chia tải), mỗi channel 1 luồng + 1 Selector;
+ *   chỉ bật SO_REUSEPORT khi N > 1, và trước đó thử bind port không kèm SO_REUSEPORT để báo lỗi ngay nếu
+ *   tiến trình khác (vd. server thứ 2 chạy nhầm) đang giữ port, thay vì âm thầm chia đôi heartbeat
+ * - Mỗi lần được đánh thức rút tối đa BATCH gói vào các buffer direct cấp sẵn rồi mới xử lý
+ * - So khớp tiền tố "HEARTBEAT:" / "HBC:" / "QUIT:" / "NAK:" / "CATCHUP:" trên byte, không tạo String
+ * - "HBC:<caps>:<clientId>" là heartbeat kèm khả năng của client (bit ClientRegistry.CAP_*, thập phân)
+ * - Handler trả về khoảng heartbeat khuyên dùng: gửi lại "HBACK:<ms>:<clientId>" ngay trên channel nhận
+ *   (ID chép thẳng từ gói đến, không tạo String); socket đầy thì bỏ, client giữ khoảng cũ
+ * - Client ID tra qua bảng băm theo byte (IdCache): chỉ tạo String khi gặp ID mới
+ * - Không hỗ trợ SO_REUSEPORT (Windows, JDK cũ): chỉ dùng 1 channel
+ *
+ * Cấu hình: -Dalert.ingest.threads (mặc định min(4, số CPU)), -Dalert.ingest.rcvbuf (byte)
+ */
+public class HeartbeatIngest implements Closeable {
+
+    /** Các callback được gọi từ luồng nhận (có thể nhiều luồng song song) */
+    public interface Handler {
+        /** @return khoảng heartbeat (ms) gửi lại cho client trong HBACK, <= 0 = không trả lời */
+        int onHeartbeat(String clientId, int capabilities, InetSocketAddress from);
+        void onQuit(String clientId, InetSocketAddress from);
+        void onNak(String body, InetSocketAddress from);
+        void onCatchUp(String body, InetSocketAddress from);
+    }
+
+    static final int BATCH = 64;
+    static final int MAX_PACKET = 1024;
+
+    private static final byte[] HEARTBEAT = "HEARTBEAT:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEARTBEAT_CAPS = "HBC:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUIT = "QUIT:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAK = "NAK:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CATCHUP = "CATCHUP:".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] HBACK = "HBACK:".getBytes(StandardCharsets.US_ASCII);
+
+    private final int port;
+    private final Handler handler;
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+    private final AtomicLong acks = new AtomicLong();
+    private final AtomicLong acksDropped = new AtomicLong();
+
+    public HeartbeatIngest(int port, Handler handler) {
+        this.port = port;
+        this.handler = handler;
+    }
+
+    /**
+     * Mở các channel và khởi động luồng nhận
+     * @return số channel thực sự được mở
+     */
+    public synchronized int start() throws IOException {
+        int wanted = Math.max(1, Integer.getInteger("alert.ingest.threads",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+        int rcvbuf = Integer.getInteger("alert.ingest.rcvbuf", 4 << 20);
+        if (wanted > 1) ensurePortFree(port);
+        running = true;
+        try {
+            for (int i = 0; i < wanted; i++) {
+                DatagramChannel ch = DatagramChannel.open(StandardProtocolFamily.INET);
+                boolean shared = wanted > 1 && enableReusePort(ch);
+                ch.setOption(StandardSocketOptions.SO_RCVBUF, rcvbuf);
+                ch.bind(new InetSocketAddress(port));
+                ch.configureBlocking(false);
+                Worker w = new Worker(ch, i);
+                workers.add(w);
+                w.thread.start();
+                if (!shared) break;
+            }
+        } catch (IOException e) {
+            if (workers.isEmpty()) {
+                running = false;
+                throw e;
+            }
+            // Đã có ít nhất 1 channel: chạy tiếp với số channel hiện có
+            System.err.println("⚠ Chỉ mở được " + workers.size() + " heartbeat channel: " + e.getMessage());
+        }
+        return workers.size();
+    }
+
+    /**
+     * Bind thử không kèm SO_REUSEPORT: thất bại nếu port đã có chủ (kể cả socket SO_REUSEPORT của tiến trình khác)
+     */
+    private static void ensurePortFree(int port) throws IOException {
+        try (DatagramChannel probe = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            probe.bind(new InetSocketAddress(port));
+        } catch (BindException e) {
+            BindException inUse = new BindException("Heartbeat port " + port + " đang được tiến trình khác sử dụng");
+            inUse.initCause(e);
+            throw inUse;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean enableReusePort(DatagramChannel ch) throws IOException {
+        // StandardSocketOptions.SO_REUSEPORT chỉ có từ JDK 9: tìm theo tên để vẫn chạy trên JDK 8
+        for (SocketOption<?> opt : ch.supportedOptions()) {
+            if ("SO_REUSEPORT".equals(opt.name()) && opt.type() == Boolean.class) {
+                ch.setOption((SocketOption<Boolean>) opt, Boolean.TRUE);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long packets() { return packets.get(); }
+    public long batches() { return batches.get(); }
+    public long unknown() { return unknown.get(); }
+    public long acks() { return acks.get(); }
+    public long acksDropped() { return acksDropped.get(); }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Worker w : workers) {
+            w.selector.wakeup();
+        }
+        for (Worker w : workers) {
+            try {
+                w.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                w.selector.close();
+                w.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        workers.clear();
+    }
+
+    // ===== Luồng nhận =====
+    private final class Worker implements Runnable {
+        final DatagramChannel channel;
+        final Selector selector;
+        final Thread thread;
+        final ByteBuffer[] bufs = new ByteBuffer[BATCH];
+        final InetSocketAddress[] from = new InetSocketAddress[BATCH];
+        final IdCache ids = new IdCache();
+        final ByteBuffer reply = ByteBuffer.allocateDirect(MAX_PACKET + 32);
+
+        Worker(DatagramChannel channel, int index) throws IOException {
+            this.channel = channel;
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+            for (int i = 0; i < BATCH; i++) bufs[i] = ByteBuffer.allocateDirect(MAX_PACKET);
+            this.thread = new Thread(this, "heartbeat-ingest-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (selector.select() == 0) continue;
+                    selector.selectedKeys().clear();
+                    // Rút hết socket buffer theo từng lô BATCH gói
+                    int n;
+                    do {
+                        n = drain();
+                        for (int i = 0; i < n; i++) {
+                            try {
+                                dispatch(bufs[i], from[i]);
+                            } catch (RuntimeException e) {
+                                System.err.println("⚠ Lỗi xử lý gói từ " + from[i] + ": " + e);
+                            }
+                            from[i] = null;
+                        }
+                        if (n > 0) batches.incrementAndGet();
+                    } while (n == BATCH && running);
+                }
+            } catch (ClosedChannelException ignored) {
+                // close()
+            } catch (IOException e) {
+                if (running) System.err.println("⚠ Heartbeat ingest dừng: " + e.getMessage());
+            }
+        }
+
+        private int drain() throws IOException {
+            int n = 0;
+            while (n < BATCH) {
+                ByteBuffer b = bufs[n];
+                b.clear();
+                SocketAddress sa = channel.receive(b);
+                if (sa == null) break;
+                b.flip();
+                from[n++] = (InetSocketAddress) sa;
+            }
+            packets.addAndGet(n);
+            return n;
+        }
+
+        private void dispatch(ByteBuffer b, InetSocketAddress addr) {
+            int start = b.position();
+            int end = b.limit();
+            // Tương đương String.trim() trên byte
+            while (start < end && (b.get(start) & 0xFF) <= ' ') start++;
+            while (end > start && (b.get(end - 1) & 0xFF) <= ' ') end--;
+
+            if (startsWith(b, start, end, HEARTBEAT)) {
+                handler.onHeartbeat(clientId(b, start + HEARTBEAT.length, end, addr), 0, addr);
+            } else if (startsWith(b, start, end, HEARTBEAT_CAPS)) {
+                int p = start + HEARTBEAT_CAPS.length;
+                int caps = 0;
+                for (int c; p < end && (c = b.get(p) - '0') >= 0 && c <= 9; p++) caps = caps * 10 + c;
+                if (p < end && b.get(p) == ':') p++;
+                while (p < end && (b.get(p) & 0xFF) <= ' ') p++;
+                int advisedMs = handler.onHeartbeat(clientId(b, p, end, addr), caps, addr);
+                if (advisedMs > 0 && p < end) ack(advisedMs, b, p, end, addr);
+            } else if (startsWith(b, start, end, QUIT)) {
+                handler.onQuit(clientId(b, start + QUIT.length, end, addr), addr);
+            } else if (startsWith(b, start, end, NAK)) {
+                // NAK hiếm: tạo String cho đơn giản
+                handler.onNak(text(b, start + NAK.length, end), addr);
+            } else if (startsWith(b, start, end, CATCHUP)) {
+                handler.onCatchUp(text(b, start + CATCHUP.length, end), addr);
+            } else {
+                // Gói không có tiền tố: coi như heartbeat, ID = IP (giống trước)
+                unknown.incrementAndGet();
+                handler.onHeartbeat(addr.getAddress().getHostAddress(), 0, addr);
+            }
+        }
+
+        /** "HBACK:<ms>:<clientId>", ID lấy từ [idStart, end) của gói heartbeat */
+        private void ack(int advisedMs, ByteBuffer b, int idStart, int end, InetSocketAddress addr) {
+            reply.clear();
+            reply.put(HBACK);
+            int digits = reply.position();
+            for (int v = advisedMs; v > 0; v /= 10) reply.put((byte) ('0' + v % 10));
+            for (int i = digits, j = reply.position() - 1; i < j; i++, j--) {
+                byte t = reply.get(i);
+                reply.put(i, reply.get(j));
+                reply.put(j, t);
+            }
+            reply.put((byte) ':');
+            for (int i = idStart; i < end; i++) reply.put(b.get(i));
+            reply.flip();
+            try {
+                if (channel.send(reply, addr) == 0) acksDropped.incrementAndGet();
+                else acks.incrementAndGet();
+            } catch (IOException e) {
+                acksDropped.incrementAndGet();
+            }
+        }
+
+        private String clientId(ByteBuffer b, int start, int end, InetSocketAddress addr) {
+            while (start < end && (b.get(start) & 0xFF) <= ' ') start++;
+            if (start == end) return addr.getAddress().getHostAddress();
+            return ids.lookup(b, start, end);
+        }
+    }
+
+    private static String text(ByteBuffer b, int start, int end) {
+        byte[] body = new byte[end - start];
+        for (int i = 0; i < body.length; i++) body[i] = b.get(start + i);
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(ByteBuffer b, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b.get(start + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Bảng băm địa chỉ mở: byte của ID -> String đã tạo sẵn.
+     * Mỗi luồng nhận có 1 bảng riêng nên không cần khóa. Đầy thì xóa trắng và làm lại.
+     */
+    static final class IdCache {
+        private static final int MAX_ENTRIES = 1 << 20;
+
+        private byte[][] keys;
+        private String[] values;
+        private int[] hashes;
+        private int mask;
+        private int count;
+
+        IdCache() {
+            alloc(1024);
+        }
+
+        private void alloc(int cap) {
+            keys = new byte[cap][];
+            values = new String[cap];
+            hashes = new int[cap];
+            mask = cap - 1;
+            count = 0;
+        }
+
+        String lookup(ByteBuffer b, int start, int end) {
+            int h = 1;
+            for (int i = start; i < end; i++) h = 31 * h + b.get(i);
+            h ^= h >>> 16;
+            int i = h & mask;
+            while (keys[i] != null) {
+                if (hashes[i] == h && equal(keys[i], b, start, end)) return values[i];
+                i = (i + 1) & mask;
+            }
+            byte[] key = new byte[end - start];
+            for (int k = 0; k < key.length; k++) key[k] = b.get(start + k);
+            String id = new String(key, StandardCharsets.UTF_8);
+            if (count + 1 > (mask + 1) / 2) {
+                int cap = mask + 1;
+                if (cap < 2 * MAX_ENTRIES) rehash(cap * 2);
+                else alloc(cap); // quá MAX_ENTRIES ID: bỏ cache cũ
+                i = h & mask;
+                while (keys[i] != null) i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = id;
+            hashes[i] = h;
+            count++;
+            return id;
+        }
+
+        private void rehash(int cap) {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+            int n = count;
+            alloc(cap);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == null) continue;
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                hashes[i] = oldHashes[j];
+            }
+            count = n;
+        }
+
+        private static boolean equal(byte[] key, ByteBuffer b, int start, int end) {
+            if (key.length != end - start) return false;
+            for (int k = 0; k < key.length; k++) {
+                if (key[k] != b.get(start + k)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package alert_notification;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram.java
+ * Histogram log-tuyến tính kiểu HdrHistogram cho giá trị long >= 0 (độ trễ, khoảng cách heartbeat)
+ * - Giá trị < 64 được đếm chính xác; lớn hơn thì mỗi lũy thừa của 2 chia 32 ô (sai số tương đối <= 3.2%)
+ * - Kích thước cố định (1888 ô), không cấp phát khi ghi, ghi lock-free từ nhiều luồng
+ * - Đọc (percentile, snapshot) không khóa nên có thể lệch vài mẫu đang ghi dở, đủ cho giám sát
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;      // 32 ô cho mỗi lũy thừa của 2
+    private static final int LINEAR = SUB_COUNT << 1;          // [0, 64) đếm chính xác
+    static final int BUCKETS = LINEAR + (62 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Ghi 1 giá trị, giá trị âm được tính là 0 */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) m = max.get();
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;   // >= 1
+        return LINEAR + (shift - 1) * SUB_COUNT + (int) (v >>> shift) - SUB_COUNT;
+    }
+
+    /** Giá trị lớn nhất thuộc ô index */
+    static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int shift = (index - LINEAR) / SUB_COUNT + 1;
+        long top = (index - LINEAR) % SUB_COUNT + SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public long count() { return count.get(); }
+    public long sum() { return sum.get(); }
+    public long max() { return max.get(); }
+
+    /**
+     * @param q trong [0, 1]
+     * @return giá trị mà tỉ lệ q số mẫu không vượt quá (cận trên của ô, không lớn hơn max), 0 nếu rỗng
+     */
+    public long percentile(double q) {
+        return snapshot().percentile(q);
+    }
+
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            c[i] = counts.get(i);
+            total += c[i];
+        }
+        return new Snapshot(c, total, sum.get(), max.get());
+    }
+
+    /** Bản sao bất biến để tính nhiều percentile mà không đọc lại mảng đếm */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long total, long sum, long max) {
+            this.counts = counts;
+            this.total = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long count() { return total; }
+        public long sum() { return sum; }
+        public long max() { return max; }
+
+        public long percentile(double q) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+}
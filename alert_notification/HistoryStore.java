@@ -0,0 +1,533 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * HistoryStore.java
+ * Chỉ mục lịch sử cảnh báo nằm cạnh alerts.log
+ * - alerts.log.idx: chỉ mục thưa, cứ STRIDE bản ghi lưu 1 cặp (offset, timestamp)
+ * - alerts.log.INFO/WARNING/ERROR.idx: posting list số thứ tự bản ghi theo level
+ * - Đọc bản ghi qua memory-map, truy vấn theo trang:
+ *   "ERROR từ T1 tới T2, trang 3"
+ * - Cập nhật tăng dần từ AlertJournal, lúc khởi động chỉ quét phần đuôi chưa có chỉ mục
+ * - Khi journal xoay vòng, file hiện tại thành 1 segment nén theo khối (LogSegments);
+ *   số thứ tự bản ghi vẫn liên tục qua các segment, đọc 1 trang cũ chỉ giải nén 1 khối
+ */
+public class HistoryStore implements AlertJournal.Listener, AlertJournal.Roller, Closeable {
+
+    public static final String[] LEVELS = AlertFrame.LEVELS;
+
+    static final int STRIDE = 64;
+    private static final int MAGIC = 0x414C4958; // "ALIX"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int MAP_CHUNK = 4 << 20;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /** 1 trang kết quả truy vấn */
+    public static class Page {
+        public final int total;
+        public final List<String> rows;
+
+        Page(int total, List<String> rows) {
+            this.total = total;
+            this.rows = rows;
+        }
+    }
+
+    private final Path log;
+    private final LogSegments segments;
+    private int base; // số bản ghi nằm trong các segment đã đóng
+    private final FileChannel idx;
+    private final FileChannel[] postings = new FileChannel[LEVELS.length];
+    private FileChannel reader;
+
+    // Chỉ mục thưa trong bộ nhớ: block k = bản ghi [k*STRIDE, (k+1)*STRIDE)
+    private long[] blockOffset = new long[1024];
+    private long[] blockTs = new long[1024];
+    private int recordCount;
+    private long indexedEnd;
+    private final int[] levelCount = new int[LEVELS.length];
+    private long activeLastTs;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private final MappedByteBuffer[] postingMaps = new MappedByteBuffer[LEVELS.length];
+
+    // Cache parse timestamp: các dòng liên tiếp thường cùng 1 giây
+    private String lastTsText;
+    private long lastTs;
+
+    private final CopyOnWriteArrayList<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    public HistoryStore(Path log) throws IOException {
+        this.log = log;
+        this.segments = new LogSegments(log);
+        this.base = segments.totalRecords();
+        this.idx = FileChannel.open(sibling(".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int l = 0; l < LEVELS.length; l++) {
+            postings[l] = FileChannel.open(sibling("." + LEVELS[l] + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        if (!load()) reset();
+        catchUp();
+    }
+
+    private Path sibling(String suffix) {
+        return log.resolveSibling(log.getFileName() + suffix);
+    }
+
+    /**
+     * Đăng ký nhận số bản ghi mới mỗi khi chỉ mục tăng (gọi trên writer thread)
+     */
+    public void addListener(IntConsumer l) {
+        listeners.add(l);
+    }
+
+    public synchronized int size() {
+        return base + recordCount;
+    }
+
+    // ===== Đọc =====
+
+    /**
+     * Bản ghi thứ rec (0 = cũ nhất)
+     */
+    public String get(int rec) {
+        List<String> r = getRange(rec, 1);
+        if (r.isEmpty()) throw new IndexOutOfBoundsException("record " + rec);
+        return r.get(0);
+    }
+
+    /**
+     * Tối đa n bản ghi liên tiếp bắt đầu từ from (đánh số qua mọi segment)
+     */
+    public synchronized List<String> getRange(int from, int n) {
+        List<String> out = new ArrayList<>();
+        if (from < 0) return out;
+        while (from < base && out.size() < n) {
+            LogSegments.Segment s = segments.find(from);
+            List<String> part = segmentRange(s, from - s.firstRecord, n - out.size());
+            if (part.isEmpty()) break;
+            out.addAll(part);
+            from = s.firstRecord + s.count;
+        }
+        if (out.size() < n && from >= base) out.addAll(activeRange(from - base, n - out.size()));
+        return out;
+    }
+
+    private List<String> segmentRange(LogSegments.Segment s, int from, int n) {
+        try {
+            return segments.range(s, from, n);
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể đọc segment " + s.name + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Tối đa n bản ghi liên tiếp của file đang ghi, from tính trong file đó
+     */
+    private List<String> activeRange(int from, int n) {
+        int count = from < 0 ? 0 : Math.max(0, Math.min(n, recordCount - from));
+        List<String> out = new ArrayList<>(count);
+        if (count == 0) return out;
+        try {
+            int b = from / STRIDE;
+            long start = blockOffset[b];
+            int lastBlock = (from + count - 1) / STRIDE;
+            long end = lastBlock + 1 < blockCount() ? blockOffset[lastBlock + 1] : indexedEnd;
+            ByteBuffer w = window(start, end);
+            for (int skip = from - b * STRIDE; skip > 0; skip--) readLine(w);
+            for (int i = 0; i < count; i++) out.add(readLine(w));
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể đọc log: " + e.getMessage());
+        }
+        return out;
+    }
+
+    /**
+     * Truy vấn theo trang.
+     * Segment đã đóng nằm ngoài khoảng thời gian bị bỏ qua; segment nằm trọn trong khoảng
+     * chỉ cần đếm qua manifest. Segment chỉ giao 1 phần được đếm theo khối (LogSegments.match):
+     * chỉ giải nén khối ở biên khoảng thời gian và khối chứa trang cần lấy.
+     * @param level  INFO/WARNING/ERROR, null = mọi level
+     * @param fromMs thời điểm bắt đầu (bao gồm), epoch millis
+     * @param toMs   thời điểm kết thúc (bao gồm), epoch millis
+     * @param page   số trang, bắt đầu từ 0
+     */
+    public synchronized Page query(String level, long fromMs, long toMs, int page, int pageSize) {
+        int l = level == null ? -1 : levelIndex(level);
+        if (level != null && l < 0) return new Page(0, new ArrayList<>());
+        int skip = page * pageSize;
+        int total = 0;
+        List<String> rows = new ArrayList<>();
+
+        for (LogSegments.Segment s : segments.list()) {
+            if (!s.overlaps(fromMs, toMs)) continue;
+            int n = s.within(fromMs, toMs) ? s.matches(l) : -1;
+            if (n < 0 || (rows.size() < pageSize && skip < total + n)) {
+                try {
+                    n = segments.match(s, l, fromMs, toMs, Math.max(0, skip - total), pageSize, rows);
+                } catch (IOException e) {
+                    System.err.println("⚠ Không thể đọc segment " + s.name + ": " + e.getMessage());
+                    if (n < 0) n = 0;
+                }
+            }
+            total += n;
+        }
+
+        // File đang ghi: dùng chỉ mục thưa + posting list
+        int lo = firstAtOrAfter(fromMs);
+        int hi = toMs == Long.MAX_VALUE ? recordCount : firstAtOrAfter(toMs + 1);
+        if (hi < lo) hi = lo;
+        int activeSkip = Math.max(0, skip - total);
+        if (l < 0) {
+            if (rows.size() < pageSize) rows.addAll(activeRange(lo + activeSkip, Math.min(pageSize - rows.size(), hi - lo - activeSkip)));
+            return new Page(total + hi - lo, rows);
+        }
+        try {
+            IntBuffer p = postingMap(l);
+            int a = lowerBound(p, levelCount[l], lo);
+            int b = lowerBound(p, levelCount[l], hi);
+            for (int i = a + activeSkip; i < b && rows.size() < pageSize; i++) {
+                rows.addAll(activeRange(p.get(i), 1));
+            }
+            return new Page(total + b - a, rows);
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể đọc chỉ mục: " + e.getMessage());
+            return new Page(total, rows);
+        }
+    }
+
+    /**
+     * Số thứ tự bản ghi đầu tiên có timestamp >= ms
+     */
+    private int firstAtOrAfter(long ms) {
+        int blocks = blockCount();
+        int b = 0, hiB = blocks;
+        while (b < hiB) {
+            int mid = (b + hiB) >>> 1;
+            if (blockTs[mid] < ms) b = mid + 1; else hiB = mid;
+        }
+        if (b == 0) return 0;
+        // Đáp án nằm trong block b-1 hoặc là bản ghi đầu của block b
+        int first = (b - 1) * STRIDE;
+        List<String> rows = activeRange(first, STRIDE);
+        for (int i = 0; i < rows.size(); i++) {
+            if (parseTs(rows.get(i), 0) >= ms) return first + i;
+        }
+        return Math.min(b * STRIDE, recordCount);
+    }
+
+    private static int lowerBound(IntBuffer p, int n, int key) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (p.get(mid) < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private IntBuffer postingMap(int l) throws IOException {
+        long bytes = levelCount[l] * 4L;
+        MappedByteBuffer m = postingMaps[l];
+        if (m == null || m.capacity() < bytes) {
+            m = postings[l].map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            postingMaps[l] = m;
+        }
+        return m.asIntBuffer();
+    }
+
+    private ByteBuffer window(long start, long end) throws IOException {
+        if (window == null || start < windowStart || end > windowStart + window.capacity()) {
+            if (reader == null) reader = FileChannel.open(log, StandardOpenOption.READ);
+            long len = Math.min(Math.max(end - start, MAP_CHUNK), indexedEnd - start);
+            window = reader.map(FileChannel.MapMode.READ_ONLY, start, len);
+            windowStart = start;
+        }
+        ByteBuffer w = window.duplicate();
+        w.position((int) (start - windowStart));
+        return w;
+    }
+
+    private static String readLine(ByteBuffer w) {
+        int start = w.position();
+        int i = start;
+        int lim = w.limit();
+        while (i < lim && w.get(i) != '\n') i++;
+        int end = i;
+        if (end > start && w.get(end - 1) == '\r') end--;
+        byte[] b = new byte[end - start];
+        w.get(b);
+        w.position(Math.min(i + 1, lim));
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ===== Ghi (từ AlertJournal writer thread) =====
+
+    @Override
+    public void onWritten(List<String> lines, long[] offsets, long end) {
+        int size;
+        synchronized (this) {
+            try {
+                Appender a = new Appender();
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    a.add(offsets[i], parseTs(line, lastTs), levelOf(line));
+                }
+                a.commit(end);
+            } catch (IOException e) {
+                System.err.println("⚠ Không thể ghi chỉ mục: " + e.getMessage());
+            }
+            size = base + recordCount;
+        }
+        for (IntConsumer l : listeners) l.accept(size);
+    }
+
+    /**
+     * Journal đã đóng file log: chuyển nó thành segment và bắt đầu chỉ mục mới
+     */
+    @Override
+    public synchronized void roll(Path file) throws IOException {
+        if (recordCount == 0) return;
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        window = null;
+        Arrays.fill(postingMaps, null);
+        segments.seal(file, recordCount, blockTs[0], activeLastTs, levelCount);
+        base += recordCount;
+        reset();
+    }
+
+    /**
+     * Gom các entry của 1 lô rồi ghi 1 lần cho mỗi file
+     */
+    private class Appender {
+        ByteBuffer sparse = ByteBuffer.allocate(16 * 64);
+        final ByteBuffer[] post = new ByteBuffer[LEVELS.length];
+        final long sparsePos = HEADER + (long) blockCount() * 16;
+
+        Appender() {
+            for (int l = 0; l < post.length; l++) post[l] = ByteBuffer.allocate(4 * 256);
+        }
+
+        void add(long offset, long ts, int level) throws IOException {
+            if (recordCount % STRIDE == 0) {
+                int b = recordCount / STRIDE;
+                if (b == blockOffset.length) {
+                    blockOffset = Arrays.copyOf(blockOffset, b * 2);
+                    blockTs = Arrays.copyOf(blockTs, b * 2);
+                }
+                blockOffset[b] = offset;
+                blockTs[b] = ts;
+                sparse = grow(sparse, 16);
+                sparse.putLong(offset).putLong(ts);
+            }
+            if (level >= 0) {
+                post[level] = grow(post[level], 4);
+                post[level].putInt(recordCount);
+            }
+            activeLastTs = ts;
+            recordCount++;
+        }
+
+        void commit(long end) throws IOException {
+            sparse.flip();
+            long pos = sparsePos;
+            while (sparse.hasRemaining()) pos += idx.write(sparse, pos);
+            for (int l = 0; l < post.length; l++) {
+                post[l].flip();
+                long p = levelCount[l] * 4L;
+                levelCount[l] += post[l].remaining() / 4;
+                while (post[l].hasRemaining()) p += postings[l].write(post[l], p);
+            }
+            indexedEnd = end;
+            writeHeader();
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer b, int extra) {
+        if (b.remaining() >= extra) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(b.capacity() * 2);
+        b.flip();
+        bigger.put(b);
+        return bigger;
+    }
+
+    // ===== Khởi động / phục hồi =====
+
+    private int blockCount() {
+        return (recordCount + STRIDE - 1) / STRIDE;
+    }
+
+    private boolean load() throws IOException {
+        if (idx.size() < HEADER) return false;
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        idx.read(h, 0);
+        h.flip();
+        if (h.getInt() != MAGIC || h.getInt() != VERSION || h.getInt() != STRIDE) return false;
+        int count = (int) h.getLong();
+        long end = h.getLong();
+        long logSize = Files.exists(log) ? Files.size(log) : 0;
+        if (end > logSize || count < 0) return false;
+
+        int blocks = (count + STRIDE - 1) / STRIDE;
+        if (idx.size() < HEADER + blocks * 16L) return false;
+        ByteBuffer s = ByteBuffer.allocate(blocks * 16);
+        idx.read(s, HEADER);
+        s.flip();
+        blockOffset = new long[Math.max(1024, blocks * 2)];
+        blockTs = new long[blockOffset.length];
+        for (int b = 0; b < blocks; b++) {
+            blockOffset[b] = s.getLong();
+            blockTs[b] = s.getLong();
+        }
+        idx.truncate(HEADER + blocks * 16L);
+        recordCount = count;
+        indexedEnd = end;
+
+        // Posting list có thể dài hơn header nếu lần trước tắt giữa chừng: cắt bớt
+        for (int l = 0; l < LEVELS.length; l++) {
+            int n = (int) (postings[l].size() / 4);
+            IntBuffer p = n == 0 ? IntBuffer.allocate(0)
+                    : postings[l].map(FileChannel.MapMode.READ_ONLY, 0, n * 4L).asIntBuffer();
+            levelCount[l] = lowerBound(p, n, count);
+            postings[l].truncate(levelCount[l] * 4L);
+        }
+        return true;
+    }
+
+    private void reset() throws IOException {
+        idx.truncate(0);
+        for (FileChannel p : postings) p.truncate(0);
+        recordCount = 0;
+        indexedEnd = 0;
+        Arrays.fill(levelCount, 0);
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        h.putInt(MAGIC).putInt(VERSION).putInt(STRIDE).putLong(recordCount).putLong(indexedEnd);
+        h.flip();
+        idx.write(h, 0);
+    }
+
+    /**
+     * Lập chỉ mục phần đuôi alerts.log được ghi sau lần đánh chỉ mục cuối
+     */
+    private synchronized void catchUp() throws IOException {
+        if (!Files.exists(log)) return;
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+            long pos = indexedEnd;
+            List<String> lines = new ArrayList<>();
+            long[] offs = new long[1024];
+            while (pos < size) {
+                buf.clear();
+                int n = ch.read(buf, pos);
+                if (n <= 0) break;
+                buf.flip();
+                int lineStart = 0;
+                lines.clear();
+                for (int i = 0; i < buf.limit(); i++) {
+                    if (buf.get(i) != '\n') continue;
+                    if (lines.size() == offs.length) offs = Arrays.copyOf(offs, offs.length * 2);
+                    offs[lines.size()] = pos + lineStart;
+                    int end = i > lineStart && buf.get(i - 1) == '\r' ? i - 1 : i;
+                    lines.add(new String(buf.array(), lineStart, end - lineStart, StandardCharsets.UTF_8));
+                    lineStart = i + 1;
+                }
+                if (lines.isEmpty()) {
+                    // Dòng dài hơn bộ đệm hoặc dòng cuối chưa ghi xong
+                    if (buf.limit() == buf.capacity()) buf = ByteBuffer.allocate(buf.capacity() * 2);
+                    else break;
+                    continue;
+                }
+                onWritten(lines, offs, pos + lineStart);
+                pos += lineStart;
+            }
+        }
+    }
+
+    // ===== Parse dòng "yyyy-MM-dd HH:mm:ss [LEVEL] msg" =====
+
+    static int levelIndex(String level) {
+        for (int l = 0; l < LEVELS.length; l++) {
+            if (LEVELS[l].equals(level)) return l;
+        }
+        return -1;
+    }
+
+    static int levelOf(String line) {
+        if (line.length() < 22 || line.charAt(20) != '[') return -1;
+        int close = line.indexOf(']', 21);
+        if (close < 0) return -1;
+        for (int l = 0; l < LEVELS.length; l++) {
+            if (close - 21 == LEVELS[l].length() && line.startsWith(LEVELS[l], 21)) return l;
+        }
+        return -1;
+    }
+
+    private long parseTs(String line, long fallback) {
+        if (line.length() < 19) return fallback;
+        if (lastTsText != null && line.regionMatches(0, lastTsText, 0, 19)) return lastTs;
+        long ts = tsOf(line);
+        if (ts < 0) return fallback;
+        lastTs = ts;
+        lastTsText = line.substring(0, 19);
+        return ts;
+    }
+
+    /**
+     * Timestamp đầu dòng (epoch millis), -1 nếu không parse được
+     */
+    static long tsOf(String line) {
+        if (line.length() < 19) return -1;
+        try {
+            LocalDateTime t = LocalDateTime.of(num(line, 0, 4), num(line, 5, 2), num(line, 8, 2),
+                    num(line, 11, 2), num(line, 14, 2), num(line, 17, 2));
+            return t.atZone(ZONE).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static int num(String s, int from, int len) {
+        int v = 0;
+        for (int i = from; i < from + len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new NumberFormatException(s);
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.close();
+        idx.close();
+        for (FileChannel p : postings) p.close();
+        if (reader != null) reader.close();
+    }
+}
@@ -0,0 +1,60 @@
+package alert_notification;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * LineSink.java
+ * Chuyển sự kiện thành dòng log "yyyy-MM-dd HH:mm:ss [TYPE] nội dung"
+ * - Lớp con chỉ cần cài line(); dùng cho console, file và log giao diện
+ * - Heartbeat không sinh dòng log
+ */
+public abstract class LineSink implements AlertSink {
+
+    static final DateTimeFormatter TIME_FMT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    protected abstract void line(String line);
+
+    @Override
+    public void log(String type, String text) {
+        line(TIME_FMT.format(Instant.now()) + " [" + type + "] " + text);
+    }
+
+    @Override
+    public void alertSent(long seq, String level, String topic, String msg, String origin) {
+        String label = topic.isEmpty() ? level : level + "/" + topic;
+        log(origin, "Sent alert #" + seq + ": [" + label + "] " + msg);
+    }
+
+    @Override
+    public void clientJoined(String clientId, String ip) {
+        log("JOIN", "New client joined: " + clientId + " (" + ip + ")");
+    }
+
+    @Override
+    public void clientLeft(String clientId) {
+        log("QUIT", "Client " + clientId + " đã thoát (QUIT)");
+    }
+
+    @Override
+    public void clientTimedOut(String clientId) {
+        log("TIMEOUT", "Removed client due to timeout: " + clientId);
+    }
+
+    @Override
+    public void alertReceived(int level, String text, long seq, long latencyMs, boolean recovered) {
+        if (seq < 0) {
+            log("ALERT", "📩 Received alert: " + text);
+        } else {
+            String tag = recovered ? "♻ Recovered alert #" : "📩 Received alert #";
+            log("ALERT", tag + seq + " (" + latencyMs + " ms): " + text);
+        }
+    }
+
+    @Override
+    public void alertsLost(int count) {
+        log("ERROR", "❌ Mất " + count + " cảnh báo (không nhận được bản gửi lại)");
+    }
+}
@@ -0,0 +1,448 @@
+package alert_notification;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LoadGenerator.java
+ * Giả lập N client trong 1 JVM để đo tải server
+ * - Client giả lập chỉ là dữ liệu (ID + gói heartbeat mã hóa sẵn), chạy trên 1 scheduler dùng chung
+ *   và 1 nhóm nhỏ DatagramChannel, không có Swing / luồng riêng cho từng client
+ * - Heartbeat theo chu kỳ + jitter ngẫu nhiên; churn: mỗi giây 1 số client QUIT hoặc "crash"
+ *   (im lặng, để server tự timeout) rồi join lại sau 1 lúc
+ * - M receiver join các multicast group, đo độ trễ (timestamp trong AlertFrame) và tỉ lệ nhận theo seq
+ * - --adaptive (mặc định true): client giả lập khai báo CAP_HBACK và dùng khoảng heartbeat server khuyên
+ *   trong HBACK thay cho --interval (mỗi sender có 1 luồng đọc HBACK); --adaptive false = client cũ
+ * - --embedded: chạy luôn ServerEngine trong JVM và tự gửi cảnh báo với tốc độ --alert-rate
+ *   (metrics của server xem được qua -Dalert.metrics.port khi đang chạy)
+ *
+ * Ví dụ: java alert_notification.LoadGenerator --clients 20000 --interval 5000 --jitter 500
+ *            --churn 50 --crash-ratio 0.3 --receivers 4 --embedded --alert-rate 200 --duration 60
+ */
+public class LoadGenerator {
+
+    // ===== Cấu hình =====
+    private final int clients;
+    private final long intervalMs;
+    private final long jitterMs;
+    private final int churnPerSec;
+    private final double crashRatio;
+    private final long rejoinMs;
+    private final int receivers;
+    private final boolean embedded;
+    private final boolean adaptive;
+    private final int alertRate;
+    private final long durationSec;
+    private final long reportSec;
+    private final InetSocketAddress server;
+
+    private final ScheduledExecutorService scheduler;
+    private final DatagramChannel[] senders;
+    private final byte[][] heartbeats;
+    private final byte[][] quits;
+    // Ghi trên luồng churn / luồng đọc HBACK, đọc trên luồng heartbeat: dùng mảng atomic
+    private final AtomicIntegerArray state; // 0 = online, 1 = đã QUIT, 2 = crash
+    private final AtomicLongArray epochOf; // đổi mỗi lần client rời đi, để lịch heartbeat cũ tự dừng
+    private final AtomicIntegerArray intervalOf; // khoảng server khuyên trong HBACK gần nhất, 0 = chưa có
+
+    private final AtomicLong heartbeatsSent = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicLong acksReceived = new AtomicLong();
+    private final AtomicLong quitCount = new AtomicLong();
+    private final AtomicLong crashCount = new AtomicLong();
+    private final AtomicLong rejoinCount = new AtomicLong();
+
+    private final List<Receiver> receiverList = new ArrayList<>();
+    private final List<Thread> ackReaders = new ArrayList<>();
+    private final Histogram latency = new Histogram(); // ms, ghi lock-free từ mọi receiver
+    private ServerEngine engine;
+    private HttpServer exporter;
+    private MetricsSink serverMetrics;
+
+    public LoadGenerator(Map<String, String> opts) throws IOException {
+        clients = Integer.parseInt(opts.getOrDefault("clients", "1000"));
+        intervalMs = Long.parseLong(opts.getOrDefault("interval", "5000"));
+        jitterMs = Long.parseLong(opts.getOrDefault("jitter", "500"));
+        churnPerSec = Integer.parseInt(opts.getOrDefault("churn", "0"));
+        crashRatio = Double.parseDouble(opts.getOrDefault("crash-ratio", "0.5"));
+        rejoinMs = Long.parseLong(opts.getOrDefault("rejoin", "3000"));
+        receivers = Integer.parseInt(opts.getOrDefault("receivers", "2"));
+        embedded = opts.containsKey("embedded");
+        adaptive = Boolean.parseBoolean(opts.getOrDefault("adaptive", "true"));
+        alertRate = Integer.parseInt(opts.getOrDefault("alert-rate", "50"));
+        durationSec = Long.parseLong(opts.getOrDefault("duration", "30"));
+        reportSec = Long.parseLong(opts.getOrDefault("report", "5"));
+        server = new InetSocketAddress(opts.getOrDefault("server", "127.0.0.1"), ServerEngine.HEARTBEAT_PORT);
+
+        int threads = Integer.parseInt(opts.getOrDefault("threads",
+                String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors()))));
+        scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "load-sim");
+            t.setDaemon(true);
+            return t;
+        });
+        senders = new DatagramChannel[Math.min(64, Math.max(1, clients / 256 + 1))];
+        for (int i = 0; i < senders.length; i++) senders[i] = DatagramChannel.open(StandardProtocolFamily.INET);
+
+        heartbeats = new byte[clients][];
+        quits = new byte[clients][];
+        state = new AtomicIntegerArray(clients);
+        epochOf = new AtomicLongArray(clients);
+        intervalOf = new AtomicIntegerArray(clients);
+        int caps = ClientRegistry.CAP_BATCH | (adaptive ? ClientRegistry.CAP_HBACK : 0);
+        for (int i = 0; i < clients; i++) {
+            heartbeats[i] = ("HBC:" + caps + ":sim-" + i).getBytes(StandardCharsets.UTF_8);
+            quits[i] = ("QUIT:sim-" + i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public void run() throws Exception {
+        if (embedded) {
+            // Đo đường gửi thô: "load test #N" sẽ bị coi là trùng lặp nếu bật SuppressionStage
+            if (System.getProperty("alert.suppress") == null) System.setProperty("alert.suppress", "false");
+            serverMetrics = new MetricsSink();
+            exporter = Metrics.startExporter(Metrics.global());
+            engine = new ServerEngine(serverMetrics);
+            engine.start();
+        }
+        Map<Integer, List<InetAddress>> groups = new LinkedHashMap<>();
+        for (InetSocketAddress a : ChannelMap.fromSystemProperties().addresses()) {
+            groups.computeIfAbsent(a.getPort(), k -> new ArrayList<>()).add(a.getAddress());
+        }
+        for (int r = 0; r < receivers; r++) {
+            for (Map.Entry<Integer, List<InetAddress>> e : groups.entrySet()) {
+                Receiver rc = new Receiver(e.getKey(), e.getValue(), latency, "load-receiver-" + r + "-" + e.getKey());
+                receiverList.add(rc);
+                rc.thread.start();
+            }
+        }
+
+        if (adaptive) {
+            for (int k = 0; k < senders.length; k++) {
+                DatagramChannel ch = senders[k];
+                Thread t = new Thread(() -> readAcks(ch), "load-hback-" + k);
+                t.setDaemon(true);
+                ackReaders.add(t);
+                t.start();
+            }
+        }
+
+        // Trải đều lần heartbeat đầu trong 1 chu kỳ
+        for (int i = 0; i < clients; i++) {
+            scheduleHeartbeat(i, epochOf.get(i), ThreadLocalRandom.current().nextLong(Math.max(1, intervalMs)));
+        }
+        if (churnPerSec > 0) scheduler.scheduleAtFixedRate(this::churn, 1, 1, TimeUnit.SECONDS);
+        if (embedded && alertRate > 0) {
+            long periodUs = Math.max(1, 1_000_000L / alertRate);
+            AtomicLong n = new AtomicLong();
+            scheduler.scheduleAtFixedRate(() -> {
+                String level = AlertFrame.LEVELS[ThreadLocalRandom.current().nextInt(AlertFrame.LEVELS.length)];
+                engine.sendAlert(level, "", "load test #" + n.incrementAndGet(), "LOAD");
+            }, 100_000, periodUs, TimeUnit.MICROSECONDS);
+        }
+
+        System.out.println("Load: " + clients + " clients, heartbeat " + intervalMs + "±" + jitterMs + " ms"
+                + (adaptive ? " (theo HBACK)" : "") + ", churn "
+                + churnPerSec + "/s, " + receivers + " receivers" + (embedded ? ", embedded server" : ", server " + server));
+        long start = System.nanoTime();
+        long lastHb = 0, lastNanos = start, lastIngested = 0;
+        for (long t = reportSec; t <= durationSec; t += reportSec) {
+            Thread.sleep(reportSec * 1000);
+            long now = System.nanoTime();
+            double dt = (now - lastNanos) / 1e9;
+            long hb = heartbeatsSent.get();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("[%3ds] heartbeat %.0f/s", (now - start) / 1_000_000_000L, (hb - lastHb) / dt));
+            if (serverMetrics != null) {
+                long ing = serverMetrics.heartbeats();
+                sb.append(String.format(" (server nhận %.0f/s, online %d)", (ing - lastIngested) / dt, engine.clients().size()));
+                lastIngested = ing;
+            }
+            if (adaptive) sb.append(" hback=").append(acksReceived.get()).append(" interval~").append(sampleInterval()).append("ms");
+            sb.append(" errors=").append(sendErrors.get())
+              .append(" quit=").append(quitCount.get()).append(" crash=").append(crashCount.get())
+              .append(" rejoin=").append(rejoinCount.get());
+            System.out.println(sb);
+            lastHb = hb;
+            lastNanos = now;
+        }
+        report();
+        shutdown();
+    }
+
+    // ===== Heartbeat giả lập =====
+    private void scheduleHeartbeat(int i, long epoch, long delayMs) {
+        scheduler.schedule(() -> {
+            if (epochOf.get(i) != epoch || state.get(i) != 0) return; // đã rời đi
+            send(i, heartbeats[i]);
+            heartbeatsSent.incrementAndGet();
+            int advised = intervalOf.get(i);
+            if (advised > 0) {
+                // Server đã cộng jitter vào khoảng khuyên dùng
+                scheduleHeartbeat(i, epoch, advised);
+                return;
+            }
+            long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0;
+            scheduleHeartbeat(i, epoch, Math.max(1, intervalMs + jitter));
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Đọc HBACK:<ms>:sim-<i> server trả về trên 1 sender, chạy tới khi channel bị đóng */
+    private void readAcks(DatagramChannel ch) {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        byte[] id = "sim-".getBytes(StandardCharsets.US_ASCII);
+        while (ch.isOpen()) {
+            buf.clear();
+            try {
+                ch.receive(buf);
+            } catch (IOException e) {
+                return;
+            }
+            byte[] b = buf.array();
+            int end = buf.position();
+            int p = HeartbeatIngest.HBACK.length;
+            if (end <= p + id.length + 2 || b[0] != 'H' || b[p - 1] != ':') continue;
+            int ms = 0;
+            for (; p < end && b[p] != ':'; p++) ms = ms * 10 + (b[p] - '0');
+            p += 1 + id.length;
+            int i = 0;
+            for (; p < end; p++) i = i * 10 + (b[p] - '0');
+            if (i >= 0 && i < clients && ms > 0) {
+                intervalOf.set(i, ms);
+                acksReceived.incrementAndGet();
+            }
+        }
+    }
+
+    /** Khoảng HBACK trung bình trên 1 mẫu client (0 nếu chưa có) */
+    private long sampleInterval() {
+        long sum = 0;
+        int n = 0;
+        for (int i = 0; i < clients; i += Math.max(1, clients / 256)) {
+            int ms = intervalOf.get(i);
+            if (ms > 0) {
+                sum += ms;
+                n++;
+            }
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+
+    private void send(int i, byte[] payload) {
+        DatagramChannel ch = senders[i % senders.length];
+        try {
+            ch.send(ByteBuffer.wrap(payload), server);
+        } catch (IOException e) {
+            sendErrors.incrementAndGet();
+        }
+    }
+
+    // ===== Churn: QUIT hoặc crash rồi join lại =====
+    private void churn() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int k = 0; k < churnPerSec; k++) {
+            int i = rnd.nextInt(clients);
+            long epoch;
+            // Kiểm tra rồi đổi state + epoch cùng nhau: vẫn cần khóa dù từng ô là atomic
+            synchronized (this) {
+                if (state.get(i) != 0) continue;
+                epoch = epochOf.incrementAndGet(i);
+                if (rnd.nextDouble() < crashRatio) {
+                    state.set(i, 2);
+                    crashCount.incrementAndGet();
+                } else {
+                    state.set(i, 1);
+                    send(i, quits[i]);
+                    quitCount.incrementAndGet();
+                }
+            }
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    if (epochOf.get(i) != epoch) return;
+                    state.set(i, 0);
+                }
+                rejoinCount.incrementAndGet();
+                scheduleHeartbeat(i, epoch, 0);
+            }, rejoinMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Tập seq đã nhận của 1 channel: bit = seq - min, không phải seq tuyệt đối
+     * (sau khi khôi phục snapshot seq bắt đầu từ giá trị lớn, và có thể vượt 2^31)
+     */
+    private static final class SeqSet {
+        long min;
+        long max;
+        BitSet bits = new BitSet();
+
+        SeqSet(long first) {
+            min = max = first;
+        }
+
+        void add(long seq) {
+            if (seq < min) {
+                // Gói đến trễ cũ hơn gói đầu tiên: dời gốc (hiếm, chỉ vài seq)
+                if (max - seq >= Integer.MAX_VALUE) return;
+                int shift = (int) (min - seq);
+                BitSet moved = new BitSet();
+                for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) moved.set(i + shift);
+                bits = moved;
+                min = seq;
+            }
+            if (seq - min >= Integer.MAX_VALUE) return; // ngoài phạm vi đo của 1 lần chạy
+            bits.set((int) (seq - min));
+            max = Math.max(max, seq);
+        }
+    }
+
+    // ===== Receiver: join mọi group, đo độ trễ và seq =====
+    private static final class Receiver implements Runnable {
+        final Thread thread;
+        final MulticastSocket socket;
+        final Map<Integer, SeqSet> seen = new HashMap<>(); // theo channel
+        final Histogram latency;
+        long received;
+
+        /** 1 socket cho 1 port, join mọi group dùng port đó */
+        Receiver(int port, List<InetAddress> groups, Histogram latency, String name) throws IOException {
+            this.latency = latency;
+            socket = new MulticastSocket(port);
+            // null = interface mặc định; joinGroup(InetAddress) đã deprecated
+            for (InetAddress g : groups) socket.joinGroup(new InetSocketAddress(g, port), null);
+            socket.setSoTimeout(200);
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            byte[] buf = new byte[AlertFrame.MAX_DATAGRAM];
+            ByteBuffer bb = ByteBuffer.wrap(buf);
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            AlertFrame frame = new AlertFrame();
+            while (!socket.isClosed()) {
+                try {
+                    packet.setLength(buf.length);
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                } catch (IOException e) {
+                    return;
+                }
+                bb.clear();
+                bb.limit(packet.getLength());
+                if (!frame.decode(bb) || frame.legacy) continue;
+                if (frame.isBatch()) {
+                    int end = frame.batchEnd();
+                    for (int p = frame.batchStart(); (p = frame.decodeNext(bb, p, end)) >= 0; ) {
+                        record(frame.channel, frame.seq, System.currentTimeMillis() - frame.timestamp);
+                    }
+                    continue;
+                }
+                record(frame.channel, frame.seq, System.currentTimeMillis() - frame.timestamp);
+            }
+        }
+
+        synchronized void record(int channel, long seq, long latencyMs) {
+            received++;
+            seen.computeIfAbsent(channel, c -> new SeqSet(seq)).add(seq);
+            latency.record(latencyMs);
+        }
+
+        synchronized long expected() {
+            long n = 0;
+            for (SeqSet r : seen.values()) n += r.max - r.min + 1;
+            return n;
+        }
+
+        synchronized long unique() {
+            long n = 0;
+            for (SeqSet r : seen.values()) n += r.bits.cardinality();
+            return n;
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+
+    private void report() {
+        long received = 0, unique = 0, expected = 0;
+        for (Receiver r : receiverList) {
+            synchronized (r) {
+                received += r.received;
+                unique += r.unique();
+                expected += r.expected();
+            }
+        }
+        System.out.println("==== Kết quả ====");
+        System.out.println("heartbeat gửi: " + heartbeatsSent.get() + " (lỗi " + sendErrors.get() + ")");
+        if (adaptive) System.out.println("HBACK nhận: " + acksReceived.get() + ", khoảng khuyên dùng ~" + sampleInterval() + " ms");
+        if (serverMetrics != null) {
+            System.out.println("server: " + serverMetrics.summary());
+            long sent = 0;
+            for (int i = 0; i < AlertFrame.LEVELS.length; i++) sent += serverMetrics.sent(i);
+            System.out.println("cảnh báo server gửi: " + sent);
+        }
+        System.out.printf("cảnh báo nhận: %d (trùng %d), tỉ lệ nhận theo seq: %.4f%n",
+                received, received - unique, expected == 0 ? 0.0 : (double) unique / expected);
+        if (latency.count() > 0) {
+            Histogram.Snapshot lat = latency.snapshot();
+            System.out.printf("độ trễ ms: p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                    lat.percentile(0.50), lat.percentile(0.90), lat.percentile(0.99), lat.percentile(0.999), lat.max());
+        }
+    }
+
+    private void shutdown() {
+        scheduler.shutdownNow();
+        for (Receiver r : receiverList) r.close();
+        for (DatagramChannel ch : senders) {
+            try {
+                ch.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (engine != null) engine.close();
+        if (exporter != null) exporter.stop(0);
+    }
+
+    /** Tham số dạng --key value, hoặc --flag */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Tham số không hợp lệ: " + args[i]);
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) opts.put(key, args[++i]);
+            else opts.put(key, "true");
+        }
+        return opts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(parseArgs(args)).run();
+    }
+}
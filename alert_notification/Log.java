@@ -1,6 +1,7 @@
 package alert_notification;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -10,8 +11,20 @@ import java.util.List;
 /**
  * Log.java
  * Quản lý lịch sử gửi cảnh báo
- * - Ghi log ra file alerts.log
- * - Đọc lại lịch sử khi cần
+ * - Ghi log ra file alerts.log qua AlertJournal (bất đồng bộ, theo lô)
+ * - Chỉ mục lịch sử (HistoryStore) được cập nhật ngay khi journal ghi xong
+ * - Chỉ đọc toàn bộ file khi thật sự cần (getHistory)
+ * - Dòng log: "yyyy-MM-dd HH:mm:ss [LEVEL] (topic) msg"; ')' trong topic ghi thành "))",
+ *   cảnh báo không topic mà nội dung bắt đầu bằng '(' được ghi "() msg" để không bị đọc nhầm thành topic
+ *
+ * Cấu hình journal qua system property:
+ * - alert.journal.fsync = batch | interval | never (mặc định interval)
+ * - alert.journal.fsyncMs = chu kỳ fsync khi dùng interval (mặc định 1000)
+ * - alert.journal.queue = sức chứa hàng đợi (mặc định 65536)
+ * - alert.log.maxBytes = dung lượng tối đa trước khi xoay vòng alerts.log (mặc định 64 MB, 0 = tắt)
+ * - alert.log.rollDaily = xoay vòng khi sang ngày mới (mặc định true)
+ *
+ * Metrics (Metrics.global()): thời gian ghi mỗi lô, độ sâu hàng đợi, số lần hàng đợi đầy, số bản ghi bị bỏ
  */
 
 public class Log {
@@ -20,36 +33,158 @@ public class Log {
     private static final DateTimeFormatter FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
+    private static volatile AlertJournal journal;
+    private static HistoryStore history;
+
     /**
-     * Ghi 1 cảnh báo vào file log
+     * Journal dùng chung, tạo khi ghi lần đầu
      */
-    public static synchronized void saveAlert(String level, String message) {
-        String line = FORMATTER.format(Instant.now()) + " [" + level + "] " + message;
-        try (FileWriter fw = new FileWriter(LOG_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            out.println(line);
-        } catch (IOException e) {
-            System.err.println("⚠ Không thể ghi log: " + e.getMessage());
+    public static AlertJournal journal() {
+        AlertJournal j = journal;
+        if (j != null) return j;
+        synchronized (Log.class) {
+            if (journal == null) {
+                HistoryStore store = null;
+                try {
+                    store = history();
+                } catch (IOException e) {
+                    System.err.println("⚠ Không thể mở chỉ mục lịch sử: " + e.getMessage());
+                }
+                journal = new AlertJournal(Paths.get(LOG_FILE),
+                        Integer.getInteger("alert.journal.queue", 65536),
+                        1024,
+                        fsyncPolicy(System.getProperty("alert.journal.fsync", "interval")),
+                        Long.getLong("alert.journal.fsyncMs", 1000L),
+                        store);
+                registerMetrics(journal);
+                if (store != null) {
+                    journal.setRollover(Long.getLong("alert.log.maxBytes", 64L << 20),
+                            Boolean.parseBoolean(System.getProperty("alert.log.rollDaily", "true")),
+                            store);
+                }
+            }
+            return journal;
         }
     }
 
     /**
-     * Đọc lại toàn bộ lịch sử cảnh báo
+     * Chỉ mục lịch sử, mở (và bắt kịp phần đuôi log) khi gọi lần đầu
+     */
+    public static synchronized HistoryStore history() throws IOException {
+        if (history == null) {
+            history = new HistoryStore(Paths.get(LOG_FILE));
+        }
+        return history;
+    }
+
+    private static void registerMetrics(AlertJournal j) {
+        Metrics m = Metrics.global();
+        j.setWriteLatency(m.histogram("alert_journal_write_seconds", "Journal batch write time including fsync", 1e-6));
+        // Gauge đọc journal hiện tại: journal được tạo lại sau shutdown()
+        m.gauge("alert_journal_queue_depth", "Records waiting in the journal queue", () -> {
+            AlertJournal cur = journal;
+            return cur == null ? 0 : cur.depth();
+        });
+        m.gauge("alert_journal_backpressure_events", "Appends that found the journal queue full", () -> {
+            AlertJournal cur = journal;
+            return cur == null ? 0 : cur.backpressureEvents();
+        });
+        m.gauge("alert_journal_failed_records", "Records not written: dropped on a full queue or lost to a write error", () -> {
+            AlertJournal cur = journal;
+            return cur == null ? 0 : cur.failedRecords();
+        });
+    }
+
+    private static AlertJournal.FsyncPolicy fsyncPolicy(String s) {
+        switch (s.trim().toLowerCase()) {
+            case "batch": return AlertJournal.FsyncPolicy.EVERY_BATCH;
+            case "never": return AlertJournal.FsyncPolicy.NEVER;
+            default: return AlertJournal.FsyncPolicy.INTERVAL;
+        }
+    }
+
+    /**
+     * Ghi 1 cảnh báo vào file log (chỉ enqueue, không bao giờ chờ đĩa: gọi từ luồng gửi)
+     * @return false nếu hàng đợi journal đầy và dòng này bị bỏ (đếm vào backpressure / failed records)
+     */
+    public static boolean saveAlert(String level, String topic, String message) {
+        return journal().tryAppend(FORMATTER.format(Instant.now()) + " [" + level + "] " + record(topic, message));
+    }
+
+    /**
+     * Phần sau "[LEVEL] " của dòng log: topicOf/bodyOf đọc lại đúng (topic, message)
+     */
+    static String record(String topic, String message) {
+        if (!topic.isEmpty()) return "(" + topic.replace(")", "))") + ") " + message;
+        return message.startsWith("(") ? "() " + message : message;
+    }
+
+    /**
+     * Topic của dòng lịch sử "yyyy-MM-dd HH:mm:ss [LEVEL] (topic) msg", "" nếu không có
+     */
+    static String topicOf(String line) {
+        int start = line.indexOf("] ");
+        int end = start < 0 ? -1 : topicEnd(line, start + 2);
+        return end < 0 ? "" : line.substring(start + 3, end - 2).replace("))", ")");
+    }
+
+    /**
+     * Nội dung cảnh báo của dòng lịch sử (bỏ thời gian, level và topic)
      */
-    public static synchronized List<String> getHistory() {
-        List<String> history = new ArrayList<>();
-        File f = new File(LOG_FILE);
-        if (!f.exists()) return history;
+    static String bodyOf(String line) {
+        int start = line.indexOf("] ");
+        if (start < 0) return line;
+        int end = topicEnd(line, start + 2);
+        return line.substring(end < 0 ? start + 2 : end);
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                history.add(line);
+    /**
+     * Vị trí ngay sau "(topic) " bắt đầu tại from, -1 nếu không có topic hợp lệ
+     * (dòng cũ dạng "(x)y..." không có ") " đóng thì cả phần đó là nội dung)
+     */
+    private static int topicEnd(String line, int from) {
+        if (from >= line.length() || line.charAt(from) != '(') return -1;
+        for (int i = from + 1; i < line.length(); i++) {
+            if (line.charAt(i) != ')') continue;
+            if (i + 1 < line.length() && line.charAt(i + 1) == ')') {
+                i++;
+                continue;
             }
+            return i + 1 < line.length() && line.charAt(i + 1) == ' ' ? i + 2 : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Xả journal xuống đĩa và đóng file, gọi từ shutdown()
+     */
+    public static synchronized void shutdown() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException ignored) {
+            }
+            history = null;
+        }
+    }
+
+    /**
+     * Đọc lại toàn bộ lịch sử cảnh báo, kể cả các segment đã xoay vòng
+     * (tốn O(kích thước log), chỉ gọi khi cần)
+     */
+    public static List<String> getHistory() {
+        AlertJournal j = journal;
+        if (j != null) j.flush();
+        try {
+            HistoryStore store = history();
+            return store.getRange(0, store.size());
         } catch (IOException e) {
             System.err.println("⚠ Không thể đọc log: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return history;
     }
 }
@@ -0,0 +1,117 @@
+package alert_notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LogRing.java
+ * Vòng đệm log nhiều producer, không dùng lock, dung lượng cố định
+ * - add() lấy seq bằng getAndIncrement rồi ghi vào ô của seq
+ * - add() KHÔNG lock-free: khi phải đẩy dòng cũ nhất ra (vòng đệm đầy số dòng hoặc byte) mà producer
+ *   giữ seq đó chưa publish xong, add() quay Thread.yield() chờ producer đó. Bình thường chỉ vài lệnh,
+ *   nhưng nếu producer ấy bị hệ điều hành tạm dừng thì mọi add() cần đẩy dòng ra đều phải chờ theo.
+ *   Không thể bỏ qua ô chưa publish: producer chậm sẽ ghi đè lên dòng của seq dùng lại ô đó
+ * - Giới hạn theo số dòng (capacity) và theo byte (ước lượng 2 byte/ký tự)
+ * - Dòng bị đẩy ra khỏi vòng đệm được chuyển cho Spill (vd. ghi xuống file log)
+ * - Người đọc (UI) truy cập theo seq trong [head, tail), dòng đã bị ghi đè trả về null
+ */
+public class LogRing {
+
+    /** Nhận các dòng bị đẩy ra; được gọi trên luồng của producer nên không được chặn */
+    public interface Spill {
+        void spill(String line);
+    }
+
+    private final int mask;
+    private final long maxBytes;
+    private final Spill spill;
+    private final AtomicReferenceArray<String> lines;
+    private final AtomicLongArray seqs;  // seq đã publish ở mỗi ô, -1 = đang ghi
+    private final AtomicLong tail = new AtomicLong();  // seq kế tiếp sẽ cấp
+    private final AtomicLong head = new AtomicLong();  // seq cũ nhất còn giữ
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    public LogRing(int maxLines, long maxBytes, Spill spill) {
+        int cap = Integer.highestOneBit(Math.max(2, maxLines - 1)) << 1;
+        this.mask = cap - 1;
+        this.maxBytes = maxBytes;
+        this.spill = spill;
+        this.lines = new AtomicReferenceArray<>(cap);
+        this.seqs = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) seqs.set(i, -1);
+    }
+
+    public void add(String line) {
+        long seq = tail.getAndIncrement();
+        // Ô của seq chỉ được ghi khi seq - capacity đã bị đẩy ra
+        while (seq - head.get() > mask) evictOne();
+        int i = (int) (seq & mask);
+        seqs.set(i, -1);
+        lines.set(i, line);
+        seqs.set(i, seq);
+        bytes.addAndGet(weight(line));
+        while (bytes.get() > maxBytes && head.get() < seq) evictOne();
+    }
+
+    private void evictOne() {
+        long h = head.get();
+        if (h >= tail.get()) return;
+        int i = (int) (h & mask);
+        // Producer của h đã lấy seq nhưng chưa ghi xong: thường chỉ vài lệnh nữa,
+        // lâu hơn nếu producer đó bị tạm dừng (xem doc lớp)
+        while (seqs.get(i) != h) {
+            if (head.get() != h) return;
+            Thread.yield();
+        }
+        String line = lines.get(i);
+        if (head.compareAndSet(h, h + 1)) {
+            bytes.addAndGet(-weight(line));
+            spilled.incrementAndGet();
+            if (spill != null) spill.spill(line);
+        }
+    }
+
+    private static long weight(String line) {
+        return 2L * line.length() + 32;
+    }
+
+    /** Seq cũ nhất còn trong vòng đệm */
+    public long head() {
+        return head.get();
+    }
+
+    /** Seq kế tiếp sẽ được cấp (các seq sát tail có thể chưa ghi xong) */
+    public long tail() {
+        return tail.get();
+    }
+
+    /**
+     * Dòng có số thứ tự seq, null nếu đã bị đẩy ra hoặc chưa ghi xong
+     */
+    public String get(long seq) {
+        if (seq < 0) return null;
+        int i = (int) (seq & mask);
+        if (seqs.get(i) != seq) return null;
+        String line = lines.get(i);
+        // Ô bị ghi đè trong lúc đọc thì seq đã đổi
+        return seqs.get(i) == seq ? line : null;
+    }
+
+    /** Các dòng hiện có, cũ trước */
+    public List<String> snapshot() {
+        long from = head.get(), to = tail.get();
+        List<String> out = new ArrayList<>((int) Math.min(to - from, mask + 1));
+        for (long s = from; s < to; s++) {
+            String line = get(s);
+            if (line != null) out.add(line);
+        }
+        return out;
+    }
+
+    public long bytes() { return bytes.get(); }
+    public long spilled() { return spilled.get(); }
+}
@@ -0,0 +1,588 @@
+package alert_notification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * LogSegments.java
+ * Các segment đã đóng của alerts.log sau khi xoay vòng (rotation)
+ * - Segment: alerts.log.<yyyyMMdd-HHmmss>-<bản ghi đầu>.seg, nén GZIP nền thành .seg.gz
+ * - .seg.gz là chuỗi gzip member, mỗi member BLOCK_RECORDS bản ghi; .seg.gz.idx lưu offset nén,
+ *   khoảng thời gian và số bản ghi theo level của từng khối
+ * - alerts.log.manifest: mỗi dòng 1 segment gồm tên, bản ghi đầu, số bản ghi,
+ *   khoảng thời gian và số bản ghi theo level
+ * - Truy vấn lịch sử dùng manifest để bỏ qua segment nằm ngoài khoảng thời gian, rồi chỉ mục khối
+ *   để bỏ qua / chỉ đếm các khối trong segment
+ * - Đọc 1 trang chỉ giải nén khối chứa nó, cache vài khối gần nhất (bộ nhớ không tăng theo kích thước segment)
+ * - Segment nén theo định dạng cũ (1 gzip liền) được nén lại theo khối ở nền lúc khởi động;
+ *   trong lúc chờ, segment chưa có chỉ mục khối được đọc tuần tự và không giữ lại cả file
+ */
+class LogSegments {
+
+    private static final String SUFFIX = ".seg";
+    private static final String GZ = ".gz";
+    private static final String IDX = ".idx";
+    static final int BLOCK_RECORDS = HistoryStore.STRIDE * 16;
+    private static final int BLOCK_MAGIC = 0x414C5342; // "ALSB"
+    private static final int CACHED_BLOCKS = 16;
+    private static final DateTimeFormatter NAME_FMT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+
+    /** Metadata 1 segment, lấy từ manifest */
+    static class Segment {
+        volatile String name;
+        volatile Blocks blocks; // null = chưa nén theo khối; gán trước khi đổi name
+        final int firstRecord;
+        final int count;
+        final long firstTs;
+        final long lastTs;
+        final int[] levelCounts;
+
+        Segment(String name, int firstRecord, int count, long firstTs, long lastTs, int[] levelCounts) {
+            this.name = name;
+            this.firstRecord = firstRecord;
+            this.count = count;
+            this.firstTs = firstTs;
+            this.lastTs = lastTs;
+            this.levelCounts = levelCounts;
+        }
+
+        boolean overlaps(long fromMs, long toMs) {
+            return lastTs >= fromMs && firstTs <= toMs;
+        }
+
+        boolean within(long fromMs, long toMs) {
+            return firstTs >= fromMs && lastTs <= toMs;
+        }
+
+        /** Số bản ghi khớp level (level < 0 = mọi level) */
+        int matches(int level) {
+            return level < 0 ? count : levelCounts[level];
+        }
+
+        String toManifestLine() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(name).append(' ').append(firstRecord).append(' ').append(count)
+                    .append(' ').append(firstTs).append(' ').append(lastTs);
+            for (int c : levelCounts) sb.append(' ').append(c);
+            return sb.toString();
+        }
+
+        static Segment parse(String line) {
+            String[] f = line.trim().split(" ");
+            int[] lc = new int[HistoryStore.LEVELS.length];
+            for (int l = 0; l < lc.length; l++) lc[l] = Integer.parseInt(f[5 + l]);
+            return new Segment(f[0], Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+                    Long.parseLong(f[3]), Long.parseLong(f[4]), lc);
+        }
+    }
+
+    /** Chỉ mục khối của 1 segment đã nén (bất biến) */
+    static final class Blocks {
+        final String file;
+        final int records;
+        final long end;
+        final long[] offset;
+        final long[] firstTs;
+        final long[] lastTs;
+        final int[][] levelCounts;
+
+        private Blocks(String file, int records, long end, int n) {
+            this.file = file;
+            this.records = records;
+            this.end = end;
+            this.offset = new long[n];
+            this.firstTs = new long[n];
+            this.lastTs = new long[n];
+            this.levelCounts = new int[n][HistoryStore.LEVELS.length];
+        }
+
+        /** meta[k] = offset, firstTs, lastTs, số bản ghi theo level */
+        static Blocks of(String file, int records, long end, List<long[]> meta) {
+            Blocks b = new Blocks(file, records, end, meta.size());
+            for (int k = 0; k < meta.size(); k++) {
+                long[] m = meta.get(k);
+                b.offset[k] = m[0];
+                b.firstTs[k] = m[1] == Long.MAX_VALUE ? 0 : m[1];
+                b.lastTs[k] = m[2];
+                for (int l = 0; l < b.levelCounts[k].length; l++) b.levelCounts[k][l] = (int) m[3 + l];
+            }
+            return b;
+        }
+
+        int count() {
+            return offset.length;
+        }
+
+        int matches(int k, int level) {
+            return level < 0 ? Math.min(BLOCK_RECORDS, records - k * BLOCK_RECORDS) : levelCounts[k][level];
+        }
+    }
+
+    private final Path dir;
+    private final String logName;
+    private final Path manifest;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-compressor");
+        t.setDaemon(true);
+        return t;
+    });
+    // Khóa = số thứ tự (toàn cục) bản ghi đầu khối
+    private final Map<Integer, List<String>> cache = new LinkedHashMap<Integer, List<String>>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    LogSegments(Path log) throws IOException {
+        Path parent = log.toAbsolutePath().getParent();
+        this.dir = parent;
+        this.logName = log.getFileName().toString();
+        this.manifest = dir.resolve(logName + ".manifest");
+        load();
+        recoverUnlisted();
+        for (Segment s : segments) {
+            if (s.name.endsWith(GZ)) s.blocks = readIndex(s.name);
+            if (s.blocks == null) submitCompress(s);
+        }
+    }
+
+    synchronized int totalRecords() {
+        if (segments.isEmpty()) return 0;
+        Segment last = segments.get(segments.size() - 1);
+        return last.firstRecord + last.count;
+    }
+
+    synchronized List<Segment> list() {
+        return new ArrayList<>(segments);
+    }
+
+    /**
+     * Segment chứa bản ghi rec, null nếu rec thuộc file đang ghi
+     */
+    synchronized Segment find(int rec) {
+        int lo = 0, hi = segments.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Segment s = segments.get(mid);
+            if (rec < s.firstRecord) hi = mid - 1;
+            else if (rec >= s.firstRecord + s.count) lo = mid + 1;
+            else return s;
+        }
+        return null;
+    }
+
+    /**
+     * Đóng file log hiện tại thành 1 segment mới. Gọi trên journal writer thread,
+     * khi file log đã được đóng.
+     */
+    synchronized Segment seal(Path log, int count, long firstTs, long lastTs, int[] levelCounts) throws IOException {
+        int first = totalRecords();
+        String name = logName + "." + NAME_FMT.format(Instant.ofEpochMilli(firstTs)) + "-" + first + SUFFIX;
+        Files.move(log, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        Segment s = new Segment(name, first, count, firstTs, lastTs, levelCounts.clone());
+        segments.add(s);
+        writeManifest();
+        submitCompress(s);
+        return s;
+    }
+
+    /**
+     * Tối đa n bản ghi liên tiếp của segment, from tính trong segment.
+     * Segment đã nén chỉ giải nén các khối chứa các bản ghi này.
+     */
+    List<String> range(Segment s, int from, int n) throws IOException {
+        try {
+            return rangeOnce(s, from, n);
+        } catch (NoSuchFileException e) {
+            // Vừa được nén xong và đổi tên, đọc lại theo tên mới
+            return rangeOnce(s, from, n);
+        }
+    }
+
+    private List<String> rangeOnce(Segment s, int from, int n) throws IOException {
+        List<String> out = new ArrayList<>(Math.max(0, Math.min(n, s.count - from)));
+        Blocks b = s.blocks;
+        if (b == null) {
+            scan(dir.resolve(s.name), (rec, line) -> {
+                if (rec >= from) out.add(line);
+                return out.size() < n;
+            });
+            return out;
+        }
+        for (int k = Math.max(0, from) / BLOCK_RECORDS; k < b.count() && out.size() < n; k++) {
+            List<String> lines = block(s, b, k);
+            int i = Math.max(0, from - k * BLOCK_RECORDS);
+            int end = Math.min(lines.size(), i + n - out.size());
+            if (i < end) out.addAll(lines.subList(i, end));
+        }
+        return out;
+    }
+
+    /**
+     * Đếm bản ghi của segment khớp level (level < 0 = mọi level) và khoảng thời gian;
+     * các bản khớp từ thứ skip trở đi được thêm vào out cho tới khi out đủ limit dòng.
+     * Khối nằm trọn trong khoảng chỉ đếm qua chỉ mục, chỉ giải nén khối ở biên hoặc khối có dòng cần lấy.
+     */
+    int match(Segment s, int level, long fromMs, long toMs, int skip, int limit, List<String> out) throws IOException {
+        try {
+            return matchOnce(s, level, fromMs, toMs, skip, limit, out);
+        } catch (NoSuchFileException e) {
+            return matchOnce(s, level, fromMs, toMs, skip, limit, out);
+        }
+    }
+
+    private int matchOnce(Segment s, int level, long fromMs, long toMs, int skip, int limit, List<String> out)
+            throws IOException {
+        int[] total = {0};
+        Blocks b = s.blocks;
+        if (b == null) {
+            scan(dir.resolve(s.name), (rec, line) -> {
+                if (!matches(line, level, fromMs, toMs)) return true;
+                if (total[0]++ >= skip && out.size() < limit) out.add(line);
+                return true;
+            });
+            return total[0];
+        }
+        for (int k = 0; k < b.count(); k++) {
+            if (b.lastTs[k] < fromMs || b.firstTs[k] > toMs) continue;
+            boolean within = b.firstTs[k] >= fromMs && b.lastTs[k] <= toMs;
+            int n = within ? b.matches(k, level) : -1;
+            boolean needed = out.size() < limit && (n < 0 || skip < total[0] + n);
+            if (!needed) {
+                if (n < 0) n = filter(block(s, b, k), level, fromMs, toMs, 0, 0, out);
+            } else {
+                n = filter(block(s, b, k), level, fromMs, toMs, Math.max(0, skip - total[0]), limit, out);
+            }
+            total[0] += n;
+        }
+        return total[0];
+    }
+
+    /** Thêm vào out các dòng khớp từ thứ skip (cho tới khi đủ limit), trả về số dòng khớp */
+    private static int filter(List<String> lines, int level, long fromMs, long toMs, int skip, int limit, List<String> out) {
+        int n = 0;
+        for (String line : lines) {
+            if (!matches(line, level, fromMs, toMs)) continue;
+            if (n++ >= skip && out.size() < limit) out.add(line);
+        }
+        return n;
+    }
+
+    private static boolean matches(String line, int level, long fromMs, long toMs) {
+        if (level >= 0 && HistoryStore.levelOf(line) != level) return false;
+        long ts = HistoryStore.tsOf(line);
+        return ts >= fromMs && ts <= toMs;
+    }
+
+    /** Các dòng của khối k, giải nén đúng 1 gzip member */
+    private List<String> block(Segment s, Blocks b, int k) throws IOException {
+        int key = s.firstRecord + k * BLOCK_RECORDS;
+        synchronized (cache) {
+            List<String> cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+        long start = b.offset[k];
+        long end = k + 1 < b.count() ? b.offset[k + 1] : b.end;
+        ByteBuffer raw = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel ch = FileChannel.open(dir.resolve(b.file), StandardOpenOption.READ)) {
+            while (raw.hasRemaining()) {
+                if (ch.read(raw, start + raw.position()) < 0) throw new EOFException(b.file);
+            }
+        }
+        List<String> lines = new ArrayList<>(BLOCK_RECORDS);
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(raw.array())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) lines.add(line);
+        }
+        synchronized (cache) {
+            cache.put(key, lines);
+        }
+        return lines;
+    }
+
+    /** Nhận từng dòng khi đọc tuần tự, trả về false để dừng */
+    private interface LineVisitor {
+        boolean visit(int rec, String line);
+    }
+
+    /**
+     * Đọc tuần tự 1 file segment (thô hoặc gzip), không giữ lại các dòng đã đọc.
+     * Chỉ dùng cho segment chưa có chỉ mục khối: vừa đóng và đang chờ nén, hoặc nén theo định dạng cũ.
+     */
+    private static void scan(Path p, LineVisitor v) throws IOException {
+        try (InputStream raw = Files.newInputStream(p);
+             InputStream in = p.getFileName().toString().endsWith(GZ) ? new GZIPInputStream(raw, 64 * 1024) : raw;
+             BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            for (int rec = 0; (line = br.readLine()) != null; rec++) {
+                if (!v.visit(rec, line)) return;
+            }
+        }
+    }
+
+    // ===== Nén nền =====
+
+    private void submitCompress(Segment s) {
+        compressor.execute(() -> {
+            String src = s.name;
+            String gzName = src.endsWith(GZ) ? src : src + GZ;
+            Path gz = dir.resolve(gzName);
+            Path tmp = dir.resolve(gzName + ".tmp");
+            Path idx = dir.resolve(gzName + IDX);
+            Path idxTmp = dir.resolve(gzName + IDX + ".tmp");
+            try {
+                Blocks b = writeBlocks(dir.resolve(src), tmp, gzName);
+                writeIndex(b, idxTmp);
+                Files.move(idxTmp, idx, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                synchronized (this) {
+                    s.blocks = b;
+                    s.name = gzName;
+                    writeManifest();
+                }
+                if (!src.equals(gzName)) Files.delete(dir.resolve(src));
+            } catch (IOException e) {
+                System.err.println("⚠ Không thể nén segment " + src + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Nén segment thành chuỗi gzip member, mỗi member BLOCK_RECORDS bản ghi (file vẫn là 1 gzip hợp lệ)
+     */
+    private static Blocks writeBlocks(Path src, Path dst, String name) throws IOException {
+        List<long[]> meta = new ArrayList<>(); // offset, firstTs, lastTs, số bản ghi theo level
+        int[] records = {0};
+        try (CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(dst), 64 * 1024))) {
+            GZIPOutputStream[] gz = {null};
+            long[][] cur = {null};
+            String[] tsText = {null};
+            long[] ts = {-1};
+            scan(src, (rec, line) -> {
+                try {
+                    if (rec % BLOCK_RECORDS == 0) {
+                        if (gz[0] != null) gz[0].finish();
+                        cur[0] = new long[3 + HistoryStore.LEVELS.length];
+                        cur[0][0] = out.count;
+                        cur[0][1] = Long.MAX_VALUE;
+                        meta.add(cur[0]);
+                        gz[0] = new GZIPOutputStream(out, 64 * 1024);
+                    }
+                    gz[0].write(line.getBytes(StandardCharsets.UTF_8));
+                    gz[0].write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (tsText[0] == null || !line.regionMatches(0, tsText[0], 0, 19)) {
+                    ts[0] = HistoryStore.tsOf(line);
+                    tsText[0] = line.length() >= 19 ? line.substring(0, 19) : null;
+                }
+                if (ts[0] >= 0) {
+                    cur[0][1] = Math.min(cur[0][1], ts[0]);
+                    cur[0][2] = Math.max(cur[0][2], ts[0]);
+                }
+                int l = HistoryStore.levelOf(line);
+                if (l >= 0) cur[0][3 + l]++;
+                records[0]++;
+                return true;
+            });
+            if (gz[0] != null) gz[0].finish();
+            out.flush();
+            return Blocks.of(name, records[0], out.count, meta);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeIndex(Blocks b, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(BLOCK_MAGIC);
+            out.writeInt(BLOCK_RECORDS);
+            out.writeInt(b.records);
+            out.writeInt(b.count());
+            out.writeLong(b.end);
+            for (int k = 0; k < b.count(); k++) {
+                out.writeLong(b.offset[k]);
+                out.writeLong(b.firstTs[k]);
+                out.writeLong(b.lastTs[k]);
+                for (int c : b.levelCounts[k]) out.writeInt(c);
+            }
+        }
+    }
+
+    /**
+     * Chỉ mục khối của segment đã nén, null nếu thiếu hoặc không khớp file (vd. nén theo định dạng cũ)
+     */
+    private Blocks readIndex(String gzName) {
+        Path gz = dir.resolve(gzName);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve(gzName + IDX))))) {
+            if (in.readInt() != BLOCK_MAGIC || in.readInt() != BLOCK_RECORDS) return null;
+            int records = in.readInt();
+            int n = in.readInt();
+            long end = in.readLong();
+            if (end != Files.size(gz) || n != (records + BLOCK_RECORDS - 1) / BLOCK_RECORDS) return null;
+            List<long[]> meta = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                long[] m = new long[3 + HistoryStore.LEVELS.length];
+                for (int i = 0; i < 3; i++) m[i] = in.readLong();
+                for (int i = 3; i < m.length; i++) m[i] = in.readInt();
+                meta.add(m);
+            }
+            return Blocks.of(gzName, records, end, meta);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // ===== Manifest =====
+
+    private void load() throws IOException {
+        if (!Files.exists(manifest)) return;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) continue;
+            Segment s = Segment.parse(line);
+            if (!Files.exists(dir.resolve(s.name)) && Files.exists(dir.resolve(s.name + GZ))) {
+                // Đã nén xong nhưng chưa kịp cập nhật manifest
+                s.name = s.name + GZ;
+            }
+            segments.add(s);
+        }
+    }
+
+    /**
+     * Segment đã đổi tên nhưng chưa kịp ghi vào manifest (tắt giữa chừng): quét lại để bổ sung
+     */
+    private void recoverUnlisted() throws IOException {
+        List<String> known = new ArrayList<>();
+        for (Segment s : segments) {
+            known.add(s.name.endsWith(GZ) ? s.name.substring(0, s.name.length() - GZ.length()) : s.name);
+        }
+        List<String> found = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, logName + ".*" + SUFFIX + "*")) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                if (n.endsWith(".tmp")) {
+                    Files.delete(p);
+                    continue;
+                }
+                if (n.endsWith(IDX)) continue;
+                String rawName = n.endsWith(GZ) ? n.substring(0, n.length() - GZ.length()) : n;
+                if (known.contains(rawName) || found.contains(rawName)) continue;
+                found.add(rawName);
+            }
+        }
+        if (found.isEmpty()) return;
+        found.sort(Comparator.comparingInt(LogSegments::firstRecordOf));
+        for (String rawName : found) {
+            String name = Files.exists(dir.resolve(rawName)) ? rawName : rawName + GZ;
+            int[] lc = new int[HistoryStore.LEVELS.length];
+            long[] range = {Long.MAX_VALUE, 0};
+            int[] count = {0};
+            scan(dir.resolve(name), (rec, line) -> {
+                int l = HistoryStore.levelOf(line);
+                if (l >= 0) lc[l]++;
+                long ts = HistoryStore.tsOf(line);
+                if (ts >= 0) {
+                    range[0] = Math.min(range[0], ts);
+                    range[1] = Math.max(range[1], ts);
+                }
+                count[0]++;
+                return true;
+            });
+            if (range[0] == Long.MAX_VALUE) range[0] = 0;
+            segments.add(new Segment(name, totalRecords(), count[0], range[0], range[1], lc));
+        }
+        writeManifest();
+    }
+
+    private static int firstRecordOf(String rawName) {
+        String core = rawName.substring(0, rawName.length() - SUFFIX.length());
+        try {
+            return Integer.parseInt(core.substring(core.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        Path tmp = dir.resolve(manifest.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Segment s : segments) {
+                w.write(s.toManifestLine());
+                w.newLine();
+            }
+        }
+        Files.move(tmp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Chờ các segment đang nén xong
+     */
+    void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package alert_notification;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * LogView.java
+ * Hiển thị LogRing bằng JList ảo: chỉ vẽ các dòng đang nhìn thấy
+ * - Swing Timer (-Dalert.ui.fps, mặc định 4 Hz) đọc phần mới của ring và phát sự kiện theo khoảng
+ * - Dòng bị ring đẩy ra thì bị xóa khỏi đầu danh sách
+ * - Tự cuộn xuống cuối chỉ khi người dùng đang ở cuối danh sách
+ */
+public class LogView extends JScrollPane {
+
+    private final LogRing ring;
+    private final RingModel model = new RingModel();
+    private final JList<String> list = new JList<>(model);
+    private final Timer timer;
+
+    public LogView(LogRing ring, Font font) {
+        this.ring = ring;
+        if (font != null) list.setFont(font);
+        // Cố định kích thước ô để JList không phải đo toàn bộ các dòng
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 2);
+        list.setFixedCellWidth(1200);
+        setViewportView(list);
+        int fps = Math.max(1, Integer.getInteger("alert.ui.fps", 4));
+        timer = new Timer(1000 / fps, e -> refresh());
+        timer.setCoalesce(true);
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private void refresh() {
+        JScrollBar bar = getVerticalScrollBar();
+        boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - list.getFixedCellHeight();
+        if (model.sync() && atBottom && model.getSize() > 0) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+    }
+
+    private final class RingModel extends AbstractListModel<String> {
+        private long base;  // seq của dòng 0
+        private int size;
+
+        /** @return true nếu có thay đổi */
+        boolean sync() {
+            boolean changed = false;
+            long head = ring.head();
+            if (head > base) {
+                int removed = (int) Math.min(head - base, size);
+                base = head;
+                if (removed > 0) {
+                    size -= removed;
+                    fireIntervalRemoved(this, 0, removed - 1);
+                    changed = true;
+                }
+            }
+            // Chỉ nhận tới dòng đầu tiên chưa ghi xong
+            long end = base + size, tail = ring.tail();
+            while (end < tail && ring.get(end) != null) end++;
+            int added = (int) (end - base - size);
+            if (added > 0) {
+                int old = size;
+                size += added;
+                fireIntervalAdded(this, old, size - 1);
+                changed = true;
+            }
+            return changed;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            String line = ring.get(base + index);
+            return line == null ? "" : line;
+        }
+    }
+}
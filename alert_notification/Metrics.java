@@ -0,0 +1,180 @@
+package alert_notification;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics.java
+ * Sổ đăng ký metric (counter, gauge, histogram) và xuất theo định dạng text của Prometheus
+ * - counter()/histogram() trả về cùng đối tượng cho cùng tên + nhãn: lấy 1 lần rồi giữ lại, đường nóng chỉ tăng/ghi
+ * - Gauge đọc giá trị lúc xuất (LongSupplier), không tốn gì khi chạy
+ * - Histogram xuất dạng summary (quantile 0.5/0.9/0.99/0.999, _sum, _count), giá trị lớn nhất xuất riêng
+ *   thành family gauge <name>_max (summary của format 0.0.4 không cho phép mẫu _max)
+ * - startExporter(): HTTP GET /metrics bằng com.sun.net.httpserver, chỉ nghe trên loopback mặc định
+ *
+ * Cấu hình: -Dalert.metrics.port (0 = tắt, mặc định), -Dalert.metrics.bind (mặc định 127.0.0.1)
+ */
+public class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final double scale; // histogram: nhân giá trị ghi được để ra đơn vị xuất (vd. ms -> giây)
+        final Map<String, Object> series = new ConcurrentSkipListMap<>(); // nhãn đã định dạng -> giá trị
+
+        Family(String name, String help, Type type, double scale) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.scale = scale;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /** Sổ dùng chung trong tiến trình (journal, engine, MetricsSink mặc định) */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @param labels cặp tên/giá trị, vd. "level", "ERROR"
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER, 1)
+                .series.computeIfAbsent(labelText(labels), k -> new LongAdder());
+    }
+
+    /**
+     * @param scale hệ số đổi giá trị ghi sang đơn vị xuất, vd. 1e-3 khi ghi ms và tên metric kết thúc bằng _seconds
+     */
+    public Histogram histogram(String name, String help, double scale, String... labels) {
+        return (Histogram) family(name, help, Type.SUMMARY, scale)
+                .series.computeIfAbsent(labelText(labels), k -> new Histogram());
+    }
+
+    /** Đăng ký (hoặc thay) gauge */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE, 1).series.put(labelText(labels), value);
+    }
+
+    private Family family(String name, String help, Type type, double scale) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type, scale));
+        if (f.type != type) throw new IllegalArgumentException("Metric " + name + " đã đăng ký với kiểu " + f.type);
+        return f;
+    }
+
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Nhãn phải theo cặp tên/giá trị");
+        if (labels.length == 0) return "";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+
+    // ===== Xuất Prometheus text format 0.0.4 =====
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        StringBuilder max = new StringBuilder();
+        for (Family f : families.values()) {
+            max.setLength(0);
+            sb.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(f.name).append(' ').append(f.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            for (Map.Entry<String, Object> e : f.series.entrySet()) {
+                String labels = e.getKey();
+                Object v = e.getValue();
+                switch (f.type) {
+                    case COUNTER:
+                        sample(sb, f.name, labels, null, ((LongAdder) v).sum(), 1);
+                        break;
+                    case GAUGE:
+                        long g;
+                        try {
+                            g = ((LongSupplier) v).getAsLong();
+                        } catch (RuntimeException ex) {
+                            continue;
+                        }
+                        sample(sb, f.name, labels, null, g, 1);
+                        break;
+                    default:
+                        Histogram.Snapshot s = ((Histogram) v).snapshot();
+                        for (double q : QUANTILES) {
+                            sample(sb, f.name, labels, "quantile=\"" + q + "\"", s.percentile(q), f.scale);
+                        }
+                        sample(sb, f.name + "_sum", labels, null, s.sum(), f.scale);
+                        sample(sb, f.name + "_count", labels, null, s.count(), 1);
+                        sample(max, f.name + "_max", labels, null, s.max(), f.scale);
+                }
+            }
+            if (f.type == Type.SUMMARY) {
+                sb.append("# HELP ").append(f.name).append("_max Maximum of ").append(f.name).append('\n');
+                sb.append("# TYPE ").append(f.name).append("_max gauge\n");
+                sb.append(max);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Giá trị xuất = value * scale, nhân bằng BigDecimal để không in ra 0.0044789999999999995 */
+    private static void sample(StringBuilder sb, String name, String labels, String extra, long value, double scale) {
+        sb.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            sb.append('{').append(labels);
+            if (extra != null) sb.append(labels.isEmpty() ? "" : ",").append(extra);
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (scale == 1) sb.append(value);
+        else sb.append(BigDecimal.valueOf(value).multiply(BigDecimal.valueOf(scale)).stripTrailingZeros().toPlainString());
+        sb.append('\n');
+    }
+
+    // ===== HTTP exporter =====
+    /**
+     * Mở GET /metrics nếu -Dalert.metrics.port > 0
+     * @return server đang chạy (gọi stop(0) khi tắt), null nếu tắt hoặc lỗi
+     */
+    public static HttpServer startExporter(Metrics metrics) {
+        int port = Integer.getInteger("alert.metrics.port", 0);
+        if (port <= 0) return null;
+        try {
+            HttpServer http = HttpServer.create(
+                    new InetSocketAddress(System.getProperty("alert.metrics.bind", "127.0.0.1"), port), 0);
+            http.createContext("/metrics", ex -> {
+                byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            http.start();
+            System.out.println("Metrics: http://" + http.getAddress().getHostString() + ":" + port + "/metrics");
+            return http;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ Không mở được cổng metrics " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package alert_notification;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MetricsSink.java
+ * Ghi sự kiện vào sổ Metrics (chỉ tăng bộ đếm / ghi histogram, rẻ cho đường nóng)
+ * - Server: số cảnh báo gửi theo level, heartbeat, join/quit/timeout, khoảng cách giữa 2 heartbeat của 1 client
+ * - Client: số cảnh báo nhận theo level, nhận lại nhờ repair, mất, độ trễ nhận (timestamp gửi trong frame)
+ * - Counter/histogram được lấy 1 lần trong constructor, không tra map khi ghi
+ */
+public class MetricsSink implements AlertSink {
+
+    private final LongAdder[] sent;
+    private final LongAdder[] received;
+    private final LongAdder heartbeats;
+    private final LongAdder joins;
+    private final LongAdder quits;
+    private final LongAdder timeouts;
+    private final LongAdder recovered;
+    private final LongAdder lost;
+    private final Histogram heartbeatInterval;
+    private final Histogram latency;
+
+    /** Ghi vào Metrics.global() */
+    public MetricsSink() {
+        this(Metrics.global());
+    }
+
+    public MetricsSink(Metrics m) {
+        sent = perLevel(m, "alert_sent_total", "Alerts sent by the server");
+        received = perLevel(m, "alert_received_total", "Alerts delivered to the client (including recovered)");
+        heartbeats = m.counter("alert_heartbeats_total", "Heartbeats received by the server");
+        joins = m.counter("alert_client_joins_total", "Clients that joined");
+        quits = m.counter("alert_client_quits_total", "Clients that sent QUIT");
+        timeouts = m.counter("alert_client_timeouts_total", "Clients dropped after heartbeat timeout");
+        recovered = m.counter("alert_recovered_total", "Alerts received through NAK repair");
+        lost = m.counter("alert_lost_total", "Alerts given up as lost after NAK retries");
+        heartbeatInterval = m.histogram("alert_heartbeat_interval_seconds",
+                "Time between consecutive heartbeats of the same client", 1e-3);
+        latency = m.histogram("alert_receive_latency_seconds",
+                "Send timestamp to client delivery (clock skew between hosts included)", 1e-3);
+    }
+
+    private static LongAdder[] perLevel(Metrics m, String name, String help) {
+        LongAdder[] out = new LongAdder[AlertFrame.LEVELS.length];
+        for (int i = 0; i < out.length; i++) out[i] = m.counter(name, help, "level", AlertFrame.LEVELS[i]);
+        return out;
+    }
+
+    @Override
+    public void alertSent(long seq, String level, String topic, String msg, String origin) {
+        sent[AlertFrame.levelCode(level)].increment();
+    }
+
+    @Override
+    public void clientHeartbeat(String clientId, long intervalMs) {
+        heartbeats.increment();
+        if (intervalMs >= 0) heartbeatInterval.record(intervalMs);
+    }
+
+    @Override
+    public void clientJoined(String clientId, String ip) {
+        joins.increment();
+    }
+
+    @Override
+    public void clientLeft(String clientId) {
+        quits.increment();
+    }
+
+    @Override
+    public void clientTimedOut(String clientId) {
+        timeouts.increment();
+    }
+
+    @Override
+    public void alertReceived(int level, String text, long seq, long latencyMs, boolean recovered) {
+        if (level >= 0 && level < received.length) received[level].increment();
+        if (recovered) this.recovered.increment();
+        if (latencyMs >= 0) latency.record(latencyMs);
+    }
+
+    @Override
+    public void alertsLost(int count) {
+        lost.add(count);
+    }
+
+    public long sent(int level) { return sent[level].sum(); }
+    public long heartbeats() { return heartbeats.sum(); }
+    public long joins() { return joins.sum(); }
+    public long quits() { return quits.sum(); }
+    public long timeouts() { return timeouts.sum(); }
+    public long recovered() { return recovered.sum(); }
+    public long lost() { return lost.sum(); }
+    public Histogram heartbeatInterval() { return heartbeatInterval; }
+    public Histogram latency() { return latency; }
+
+    public long received() {
+        long n = 0;
+        for (LongAdder r : received) n += r.sum();
+        return n;
+    }
+
+    /** 1 dòng tóm tắt để in định kỳ */
+    public String summary() {
+        StringBuilder sb = new StringBuilder("sent");
+        for (int i = 0; i < AlertFrame.LEVELS.length; i++) {
+            sb.append(' ').append(AlertFrame.LEVELS[i]).append('=').append(sent[i].sum());
+        }
+        sb.append(" heartbeats=").append(heartbeats.sum())
+                .append(" joins=").append(joins.sum())
+                .append(" quits=").append(quits.sum())
+                .append(" timeouts=").append(timeouts.sum())
+                .append(" received=").append(received())
+                .append(" recovered=").append(recovered.sum())
+                .append(" lost=").append(lost.sum());
+        Histogram.Snapshot hb = heartbeatInterval.snapshot();
+        if (hb.count() > 0) {
+            sb.append(" hbIntervalMs p50=").append(hb.percentile(0.5))
+                    .append(" p99=").append(hb.percentile(0.99));
+        }
+        Histogram.Snapshot lat = latency.snapshot();
+        if (lat.count() > 0) {
+            sb.append(" latencyMs p50=").append(lat.percentile(0.5))
+                    .append(" p99=").append(lat.percentile(0.99))
+                    .append(" max=").append(lat.max());
+        }
+        return sb.toString();
+    }
+}
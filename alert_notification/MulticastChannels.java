@@ -0,0 +1,76 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * MulticastChannels.java
+ * Tập các channel multicast của Server, chia theo (level, topic) qua ChannelMap
+ * - Mỗi channel có MulticastSender, RetransmitRing và RepairService riêng (seq riêng)
+ * - Gói NAK (tới HEARTBEAT_PORT): "NAK:<clientId>:<epoch>:<channel>:<fromSeq>-<toSeq>"
+ */
+public class MulticastChannels implements Closeable {
+
+    private final ChannelMap map;
+    private final MulticastSender[] senders;
+    private final RepairService[] repairs;
+
+    public MulticastChannels(ChannelMap map, int epoch, boolean legacy, int ringSize,
+                             double repairRate, int multicastThreshold, long suppressMs) {
+        this.map = map;
+        this.senders = new MulticastSender[map.size()];
+        this.repairs = new RepairService[map.size()];
+        for (int c = 0; c < map.size(); c++) {
+            RetransmitRing ring = new RetransmitRing(ringSize);
+            senders[c] = new MulticastSender(map.address(c), c, epoch, legacy, ring);
+            repairs[c] = new RepairService(ring, senders[c], repairRate, multicastThreshold, suppressMs);
+        }
+    }
+
+    public ChannelMap map() {
+        return map;
+    }
+
+    public MulticastSender sender(int channel) {
+        return senders[channel];
+    }
+
+    /**
+     * Gửi cảnh báo lên channel tương ứng
+     * @return seq trong channel đó
+     */
+    public long send(String level, String topic, String msg) throws IOException {
+        return senders[map.route(level, topic)].send(level, topic, msg);
+    }
+
+    /**
+     * Xử lý phần sau "NAK:" của gói tin
+     * @return false nếu sai định dạng hoặc channel không tồn tại
+     */
+    public boolean onNak(String body, SocketAddress requester) {
+        // <clientId>:<epoch>:<channel>:<from>-<to>; clientId có thể chứa ':'
+        int c3 = body.lastIndexOf(':');
+        int c2 = c3 > 0 ? body.lastIndexOf(':', c3 - 1) : -1;
+        int c1 = c2 > 0 ? body.lastIndexOf(':', c2 - 1) : -1;
+        int dash = body.indexOf('-', c3 + 1);
+        if (c1 < 0 || dash < 0) return false;
+        try {
+            int epoch = Integer.parseInt(body.substring(c1 + 1, c2));
+            int channel = Integer.parseInt(body.substring(c2 + 1, c3));
+            long from = Long.parseLong(body.substring(c3 + 1, dash));
+            long to = Long.parseLong(body.substring(dash + 1));
+            if (channel < 0 || channel >= repairs.length) return false;
+            repairs[channel].onNak(epoch, from, to, requester);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (RepairService r : repairs) r.close();
+        for (MulticastSender s : senders) s.close();
+    }
+}
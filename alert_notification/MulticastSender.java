@@ -0,0 +1,189 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * MulticastSender.java
+ * Kênh gửi multicast dùng lâu dài cho 1 channel (group:port) của Server
+ * - Địa chỉ group được resolve sẵn 1 lần
+ * - Dùng lại 1 DatagramChannel + 1 direct ByteBuffer cho mọi cảnh báo
+ * - send(level, msg) thread-safe, không cấp phát bộ nhớ khi đã ổn định
+ * - Đánh số thứ tự (seq) riêng cho channel, kèm epoch của lần chạy server
+ * - Lưu frame vừa gửi vào RetransmitRing (nếu có) để trả lời NAK
+ * - sendBatch(): gộp nhiều cảnh báo (mỗi cảnh báo vẫn có seq + frame riêng trong ring) vào 1 datagram container
+ * - Chế độ legacy gửi text "[LEVEL] msg" cho client cũ
+ * - Tự mở lại channel nếu lần gửi trước bị lỗi
+ */
+public class MulticastSender implements Closeable {
+
+    private final InetSocketAddress target;
+    private final int channelId;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(AlertFrame.MAX_DATAGRAM);
+    private final AlertFrame.Encoder encoder = new AlertFrame.Encoder();
+    private final int epoch;
+    private final boolean legacy;
+    private final RetransmitRing ring;
+    private long seq;
+    private int lastLength;
+    private int[] frameOffsets = new int[16];
+
+    private DatagramChannel channel;
+    private boolean closed;
+
+    public MulticastSender(InetSocketAddress target, int channelId, int epoch, boolean legacy, RetransmitRing ring) {
+        this.target = target;
+        this.channelId = channelId;
+        this.epoch = epoch;
+        this.legacy = legacy;
+        this.ring = legacy ? null : ring;
+    }
+
+    public InetSocketAddress getTarget() {
+        return target;
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /** seq đã gán gần nhất (0 = chưa gửi gì) */
+    public synchronized long lastSeq() {
+        return seq;
+    }
+
+    /**
+     * Tiếp tục đánh số sau lastSeq (khôi phục từ ServerSnapshot), gọi trước lần gửi đầu tiên
+     */
+    public synchronized void continueFrom(long lastSeq) {
+        seq = Math.max(seq, lastSeq);
+    }
+
+    /**
+     * Gửi 1 cảnh báo tới multicast group
+     * @return số thứ tự đã gán cho cảnh báo
+     */
+    public synchronized long send(String level, String topic, String msg) throws IOException {
+        if (closed) throw new IOException("Sender closed");
+        long s = ++seq;
+        out.clear();
+        try {
+            if (legacy) {
+                encoder.encodeLegacy(out, AlertFrame.levelCode(level), msg);
+            } else {
+                encoder.encode(out, 0, AlertFrame.levelCode(level), channelId, topic, epoch, s,
+                        System.currentTimeMillis(), msg);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        out.flip();
+        if (ring != null) ring.put(s, out);
+        lastLength = out.remaining();
+        transmit(out);
+        return s;
+    }
+
+    /**
+     * Gửi n cảnh báo trong 1 datagram container (AlertFrame.FLAG_BATCH), seq liên tiếp.
+     * Chế độ legacy hoặc n == 1: gửi từng cảnh báo như send().
+     * @return seq của cảnh báo đầu tiên
+     */
+    public synchronized long sendBatch(int n, String[] levels, String[] topics, String[] msgs) throws IOException {
+        if (n == 1 || legacy) {
+            long first = send(levels[0], topics[0], msgs[0]);
+            for (int i = 1; i < n; i++) send(levels[i], topics[i], msgs[i]);
+            return first;
+        }
+        if (closed) throw new IOException("Sender closed");
+        if (frameOffsets.length < n + 1) frameOffsets = new int[n + 1];
+        long first = seq + 1;
+        long now = System.currentTimeMillis();
+        int maxLevel = 0;
+        out.clear();
+        out.position(AlertFrame.HEADER_SIZE);
+        try {
+            for (int i = 0; i < n; i++) {
+                int lenPos = out.position();
+                out.position(lenPos + 2);
+                int level = AlertFrame.levelCode(levels[i]);
+                maxLevel = Math.max(maxLevel, level);
+                encoder.encode(out, 0, level, channelId, topics[i], epoch, first + i, now, msgs[i]);
+                out.putShort(lenPos, (short) (out.position() - lenPos - 2));
+                frameOffsets[i] = lenPos + 2;
+            }
+            frameOffsets[n] = out.position() + 2;
+            encoder.encodeBatchHeader(out, 0, maxLevel, channelId, epoch, first, now);
+        } catch (IllegalArgumentException | BufferOverflowException ex) {
+            throw new IOException("Batch too large for one datagram", ex);
+        }
+        seq += n;
+        out.flip();
+        if (ring != null) {
+            ByteBuffer frame = out.duplicate();
+            for (int i = 0; i < n; i++) {
+                frame.limit(frameOffsets[i + 1] - 2).position(frameOffsets[i]);
+                ring.put(first + i, frame);
+            }
+        }
+        lastLength = out.remaining();
+        transmit(out);
+        return first;
+    }
+
+    /** Số byte của datagram gửi gần nhất bởi send()/sendBatch() (cho bộ giới hạn băng thông) */
+    public synchronized int lastLength() {
+        return lastLength;
+    }
+
+    /**
+     * Gửi nguyên 1 frame đã encode sẵn (vd. frame gửi lại khi có NAK)
+     */
+    public synchronized void sendFrame(ByteBuffer frame) throws IOException {
+        if (closed) throw new IOException("Sender closed");
+        transmit(frame);
+    }
+
+    private void transmit(ByteBuffer frame) throws IOException {
+        DatagramChannel ch = ensureOpen();
+        try {
+            ch.send(frame, target);
+        } catch (IOException ex) {
+            // Channel hỏng thì bỏ đi, lần gửi sau sẽ mở lại
+            closeChannel();
+            throw ex;
+        }
+    }
+
+    private DatagramChannel ensureOpen() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        }
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        closeChannel();
+    }
+}
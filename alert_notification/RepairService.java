@@ -0,0 +1,159 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RepairService.java
+ * Trả lời NAK của client bằng cách gửi lại frame từ RetransmitRing (1 service cho mỗi channel)
+ * - Mặc định gửi lại unicast cho client yêu cầu
+ * - Nhiều client cùng NAK 1 seq trong khoảng ngắn: multicast lại đúng 1 lần, các NAK sau bị bỏ qua
+ * - Giới hạn tốc độ gửi lại bằng token bucket để repair không thành bão
+ */
+public class RepairService implements Closeable {
+
+    public static final int FLAG_REPAIR = 0x01;
+
+    /** Số seq tối đa được xử lý trong 1 NAK */
+    static final int MAX_NAK_RANGE = 64;
+
+    private final RetransmitRing ring;
+    private final MulticastSender sender;
+    private final int epoch;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(AlertFrame.MAX_DATAGRAM);
+    private DatagramChannel channel;
+
+    // Cấu hình
+    private final double ratePerSec;
+    private final int multicastThreshold;
+    private final long suppressWindowMs;
+
+    // Token bucket
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    // Theo dõi NAK gần đây theo seq (cùng chỉ số với ring)
+    private final int mask;
+    private final long[] nakSeq;
+    private final long[] nakWindowStart;
+    private final int[] nakCount;
+    private final boolean[] multicasted;
+
+    private final AtomicLong naks = new AtomicLong();
+    private final AtomicLong unicastRepairs = new AtomicLong();
+    private final AtomicLong multicastRepairs = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong unavailable = new AtomicLong();
+
+    public RepairService(RetransmitRing ring, MulticastSender sender, double ratePerSec,
+                         int multicastThreshold, long suppressWindowMs) {
+        this.ring = ring;
+        this.sender = sender;
+        this.epoch = sender.getEpoch();
+        this.ratePerSec = ratePerSec;
+        this.tokens = ratePerSec;
+        this.multicastThreshold = multicastThreshold;
+        this.suppressWindowMs = suppressWindowMs;
+        int cap = ring.capacity();
+        this.mask = cap - 1;
+        this.nakSeq = new long[cap];
+        this.nakWindowStart = new long[cap];
+        this.nakCount = new int[cap];
+        this.multicasted = new boolean[cap];
+    }
+
+    /**
+     * Xử lý 1 NAK cho channel của service này
+     */
+    public synchronized void onNak(int nakEpoch, long from, long to, SocketAddress requester) {
+        naks.incrementAndGet();
+        if (nakEpoch != epoch || to < from) {
+            unavailable.addAndGet(Math.max(1, to - from + 1));
+            return;
+        }
+        to = Math.min(to, from + MAX_NAK_RANGE - 1);
+        long now = System.currentTimeMillis();
+        for (long s = from; s <= to; s++) {
+            if (!ring.contains(s)) {
+                unavailable.incrementAndGet();
+                continue;
+            }
+            int i = (int) (s & mask);
+            if (nakSeq[i] != s || now - nakWindowStart[i] > suppressWindowMs) {
+                nakSeq[i] = s;
+                nakWindowStart[i] = now;
+                nakCount[i] = 0;
+                multicasted[i] = false;
+            }
+            nakCount[i]++;
+            if (multicasted[i]) {
+                suppressed.incrementAndGet();
+                continue;
+            }
+            if (!takeToken()) {
+                rateLimited.incrementAndGet();
+                continue;
+            }
+            try {
+                if (nakCount[i] >= multicastThreshold) {
+                    repair(s, null);
+                    multicasted[i] = true;
+                    multicastRepairs.incrementAndGet();
+                } else {
+                    repair(s, requester);
+                    unicastRepairs.incrementAndGet();
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ Không thể gửi lại #" + s + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gửi lại frame seq, đánh dấu FLAG_REPAIR. target null = multicast lại
+     */
+    private void repair(long seq, SocketAddress target) throws IOException {
+        buf.clear();
+        if (!ring.copyTo(seq, buf)) return;
+        buf.flip();
+        buf.put(2, (byte) (buf.get(2) | FLAG_REPAIR));
+        if (target == null) {
+            sender.sendFrame(buf);
+        } else {
+            if (channel == null || !channel.isOpen()) channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.send(buf, target);
+        }
+    }
+
+    private boolean takeToken() {
+        long nowNanos = System.nanoTime();
+        tokens = Math.min(ratePerSec, tokens + (nowNanos - lastRefillNanos) * ratePerSec / 1e9);
+        lastRefillNanos = nowNanos;
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    public long naks() { return naks.get(); }
+    public long unicastRepairs() { return unicastRepairs.get(); }
+    public long multicastRepairs() { return multicastRepairs.get(); }
+    public long suppressed() { return suppressed.get(); }
+    public long rateLimited() { return rateLimited.get(); }
+    public long unavailable() { return unavailable.get(); }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package alert_notification;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * RetransmitRing.java
+ * Vòng đệm các frame cảnh báo vừa gửi, đánh chỉ số theo seq
+ * - Giữ tối đa capacity frame gần nhất (capacity là lũy thừa của 2)
+ * - Dùng lại mảng byte của từng ô, không cấp phát khi đã ổn định
+ * - Dùng để trả lời NAK (gửi lại frame bị mất)
+ */
+public class RetransmitRing {
+
+    private final int mask;
+    private final long[] seqs;
+    private final byte[][] frames;
+    private final int[] lengths;
+
+    public RetransmitRing(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = cap - 1;
+        this.seqs = new long[cap];
+        this.frames = new byte[cap][];
+        this.lengths = new int[cap];
+        Arrays.fill(seqs, -1);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Lưu frame [position, limit) của src cho seq. Không đổi position của src.
+     */
+    public synchronized void put(long seq, ByteBuffer src) {
+        int i = (int) (seq & mask);
+        int n = src.remaining();
+        byte[] slot = frames[i];
+        if (slot == null || slot.length < n) {
+            slot = new byte[Math.max(n, 256)];
+            frames[i] = slot;
+        }
+        src.duplicate().get(slot, 0, n);
+        lengths[i] = n;
+        seqs[i] = seq;
+    }
+
+    public synchronized boolean contains(long seq) {
+        return seq >= 0 && seqs[(int) (seq & mask)] == seq;
+    }
+
+    /**
+     * Chép frame của seq vào out (từ position hiện tại)
+     * @return false nếu frame đã bị ghi đè hoặc chưa từng gửi
+     */
+    public synchronized boolean copyTo(long seq, ByteBuffer out) {
+        int i = (int) (seq & mask);
+        if (seq < 0 || seqs[i] != seq || out.remaining() < lengths[i]) return false;
+        out.put(frames[i], 0, lengths[i]);
+        return true;
+    }
+}
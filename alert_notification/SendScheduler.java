@@ -0,0 +1,330 @@
+package alert_notification;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * SendScheduler.java
+ * Luồng gửi riêng cho cảnh báo: người gọi (EDT, auto send, tóm tắt) chỉ xếp hàng rồi trả về ngay
+ * - Mỗi level 1 hàng đợi có giới hạn; đầy thì từ chối (đếm lại), không chặn người gọi
+ * - Lấy ra theo ưu tiên tuyệt đối (ERROR > WARNING > INFO) hoặc weighted round-robin theo trọng số
+ * - Pacer: token bucket theo gói/giây và byte/giây (0 = không giới hạn) để không tràn buffer nhận của client
+ * - Gộp các cảnh báo liên tiếp cùng level + channel vào 1 datagram container khi batchAllowed cho phép
+ * - Metrics theo level: độ sâu hàng đợi, thời gian chờ trong hàng đợi, số bị từ chối
+ *
+ * Cấu hình (fromSystemProperties):
+ * - alert.send.policy = strict | weighted (mặc định strict)
+ * - alert.send.weights = trọng số cho weighted, vd. "ERROR:8,WARNING:4,INFO:1" (mặc định)
+ * - alert.send.queue = sức chứa mỗi hàng đợi (mặc định 4096)
+ * - alert.send.pps, alert.send.bps = giới hạn gói/giây và byte/giây (mặc định 0 = không giới hạn)
+ * - alert.send.batchBytes = kích thước tối đa 1 container (mặc định 1400, vừa 1 MTU Ethernet)
+ */
+public class SendScheduler {
+
+    /** Nhận kết quả trên luồng gửi */
+    public interface Listener {
+        void sent(long seq, String level, String topic, String msg, String origin);
+
+        /** Lỗi mạng (IOException) hoặc lỗi encode (RuntimeException), gọi cho từng cảnh báo của lô */
+        void failed(String level, String topic, String msg, Exception error);
+    }
+
+    private static final int MAX_BATCH = 32;
+
+    private static final class Item {
+        final String level;
+        final String topic;
+        final String msg;
+        final String origin;
+        final int channel;
+        final int size;          // ước lượng byte tối đa khi encode
+        final long enqueuedNanos;
+
+        Item(String level, String topic, String msg, String origin, int channel) {
+            this.level = level;
+            this.topic = topic;
+            this.msg = msg;
+            this.origin = origin;
+            this.channel = channel;
+            this.size = 2 + AlertFrame.HEADER_SIZE + 3 * (topic.length() + msg.length());
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final MulticastChannels channels;
+    private final Listener listener;
+    private final BooleanSupplier batchAllowed;
+    private final boolean weighted;
+    private final int[] weights;
+    private final int capacity;
+    private final int batchBytes;
+
+    // Pacer
+    private final double pps;
+    private final double bps;
+    private double packetTokens;
+    private double byteTokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<ArrayDeque<Item>> queues = new ArrayList<>();
+    private final int[] credits = new int[AlertFrame.LEVELS.length]; // weighted round-robin
+    private int total;
+    private volatile boolean closing;
+    private final Thread thread;
+
+    private final Histogram[] waitUs = new Histogram[AlertFrame.LEVELS.length];
+    private final LongAdder[] rejected = new LongAdder[AlertFrame.LEVELS.length];
+    private final LongAdder datagrams;
+    private final LongAdder batched;
+
+    // Mảng dùng lại cho sendBatch (chỉ luồng gửi chạm tới)
+    private final String[] bLevels = new String[MAX_BATCH];
+    private final String[] bTopics = new String[MAX_BATCH];
+    private final String[] bMsgs = new String[MAX_BATCH];
+    private final List<Item> batch = new ArrayList<>(MAX_BATCH);
+
+    public SendScheduler(MulticastChannels channels, Listener listener, BooleanSupplier batchAllowed,
+                         boolean weighted, int[] weights, int capacity, double pps, double bps,
+                         int batchBytes, Metrics metrics) {
+        this.channels = channels;
+        this.listener = listener;
+        this.batchAllowed = batchAllowed;
+        this.weighted = weighted;
+        this.weights = weights.clone();
+        this.capacity = Math.max(1, capacity);
+        this.pps = pps;
+        this.bps = bps;
+        this.packetTokens = Math.max(1, pps);
+        this.byteTokens = Math.max(AlertFrame.MAX_DATAGRAM, bps);
+        this.batchBytes = Math.max(AlertFrame.HEADER_SIZE * 2, Math.min(batchBytes, AlertFrame.MAX_DATAGRAM));
+        for (int i = 0; i < AlertFrame.LEVELS.length; i++) {
+            queues.add(new ArrayDeque<>());
+            final int lv = i;
+            String level = AlertFrame.LEVELS[i];
+            waitUs[i] = metrics.histogram("alert_send_wait_seconds", "Time an alert spent in the send queue",
+                    1e-6, "level", level);
+            rejected[i] = metrics.counter("alert_send_rejected_total", "Alerts rejected because the send queue was full",
+                    "level", level);
+            metrics.gauge("alert_send_queue_depth", "Alerts waiting in the send queue", () -> depth(lv), "level", level);
+        }
+        datagrams = metrics.counter("alert_send_datagrams_total", "Multicast datagrams sent for alerts");
+        batched = metrics.counter("alert_send_batched_total", "Alerts sent inside a batch container");
+        thread = new Thread(this::run, "alert-send");
+        thread.setDaemon(true);
+    }
+
+    public static SendScheduler fromSystemProperties(MulticastChannels channels, Listener listener,
+                                                     BooleanSupplier batchAllowed, Metrics metrics) {
+        int[] weights = new int[AlertFrame.LEVELS.length];
+        weights[AlertFrame.INFO] = 1;
+        weights[AlertFrame.WARNING] = 4;
+        weights[AlertFrame.ERROR] = 8;
+        for (String part : System.getProperty("alert.send.weights", "").split(",")) {
+            int colon = part.indexOf(':');
+            if (colon <= 0) continue;
+            String level = part.substring(0, colon).trim().toUpperCase();
+            try {
+                int w = Integer.parseInt(part.substring(colon + 1).trim());
+                for (int i = 0; i < AlertFrame.LEVELS.length; i++) {
+                    if (AlertFrame.LEVELS[i].equals(level)) weights[i] = Math.max(1, w);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("⚠ alert.send.weights không hợp lệ: " + part);
+            }
+        }
+        return new SendScheduler(channels, listener, batchAllowed,
+                "weighted".equalsIgnoreCase(System.getProperty("alert.send.policy", "strict")),
+                weights,
+                Integer.getInteger("alert.send.queue", 4096),
+                Double.parseDouble(System.getProperty("alert.send.pps", "0")),
+                Double.parseDouble(System.getProperty("alert.send.bps", "0")),
+                Integer.getInteger("alert.send.batchBytes", 1400),
+                metrics);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Xếp hàng 1 cảnh báo, không chờ
+     * @return false nếu hàng đợi của level đã đầy hoặc scheduler đã đóng
+     */
+    public boolean offer(String level, String topic, String msg, String origin) {
+        int lv = AlertFrame.levelCode(level);
+        Item item = new Item(level, topic, msg, origin, channels.map().route(level, topic));
+        lock.lock();
+        try {
+            ArrayDeque<Item> q = queues.get(lv);
+            if (closing || q.size() >= capacity) {
+                rejected[lv].increment();
+                return false;
+            }
+            q.addLast(item);
+            total++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tổng số cảnh báo còn trong mọi hàng đợi */
+    public int depth() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth(int level) {
+        lock.lock();
+        try {
+            return queues.get(level).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===== Luồng gửi =====
+    private void run() {
+        while (true) {
+            if (!takeBatch()) return;
+            pace();
+            transmit();
+        }
+    }
+
+    /**
+     * Chờ và lấy 1 lô (cùng level, cùng channel) vào batch
+     * @return false khi đã đóng và hàng đợi rỗng
+     */
+    private boolean takeBatch() {
+        batch.clear();
+        lock.lock();
+        try {
+            while (total == 0) {
+                if (closing) return false;
+                try {
+                    notEmpty.await(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    if (total == 0) return false;
+                }
+            }
+            ArrayDeque<Item> q = queues.get(pickLevel());
+            Item head = q.pollFirst();
+            batch.add(head);
+            if (batchAllowed.getAsBoolean()) {
+                int bytes = AlertFrame.HEADER_SIZE + head.size;
+                for (Item next; batch.size() < MAX_BATCH && (next = q.peekFirst()) != null
+                        && next.channel == head.channel && bytes + next.size <= batchBytes; ) {
+                    bytes += next.size;
+                    batch.add(q.pollFirst());
+                }
+            }
+            total -= batch.size();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Level của lô kế tiếp; gọi khi đang giữ lock và total > 0 */
+    private int pickLevel() {
+        if (!weighted) {
+            for (int lv = AlertFrame.LEVELS.length - 1; lv >= 0; lv--) {
+                if (!queues.get(lv).isEmpty()) return lv;
+            }
+        }
+        // Weighted round-robin: mỗi vòng level được tối đa weights[lv] lô, ưu tiên level cao khi cùng còn lượt
+        for (int round = 0; round < 2; round++) {
+            for (int lv = AlertFrame.LEVELS.length - 1; lv >= 0; lv--) {
+                if (credits[lv] > 0 && !queues.get(lv).isEmpty()) {
+                    credits[lv]--;
+                    return lv;
+                }
+            }
+            for (int lv = 0; lv < credits.length; lv++) credits[lv] = weights[lv];
+        }
+        throw new IllegalStateException("Không có hàng đợi nào còn cảnh báo");
+    }
+
+    /** Chờ tới khi có đủ 1 gói và byte không âm (byte được trừ sau khi biết kích thước thật) */
+    private void pace() {
+        if (pps <= 0 && bps <= 0) return;
+        while (true) {
+            long now = System.nanoTime();
+            double dt = (now - lastRefillNanos) / 1e9;
+            lastRefillNanos = now;
+            if (pps > 0) packetTokens = Math.min(Math.max(1, pps), packetTokens + dt * pps);
+            if (bps > 0) byteTokens = Math.min(Math.max(AlertFrame.MAX_DATAGRAM, bps), byteTokens + dt * bps);
+            double waitSec = 0;
+            if (pps > 0 && packetTokens < 1) waitSec = (1 - packetTokens) / pps;
+            if (bps > 0 && byteTokens < 0) waitSec = Math.max(waitSec, -byteTokens / bps);
+            if (waitSec <= 0) return;
+            LockSupport.parkNanos((long) (waitSec * 1e9));
+        }
+    }
+
+    private void transmit() {
+        Item head = batch.get(0);
+        int n = batch.size();
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            Item it = batch.get(i);
+            waitUs[AlertFrame.levelCode(it.level)].record((now - it.enqueuedNanos) / 1000);
+            bLevels[i] = it.level;
+            bTopics[i] = it.topic;
+            bMsgs[i] = it.msg;
+        }
+        MulticastSender sender = channels.sender(head.channel);
+        try {
+            long first = sender.sendBatch(n, bLevels, bTopics, bMsgs);
+            packetTokens -= 1;
+            byteTokens -= sender.lastLength();
+            datagrams.increment();
+            if (n > 1) batched.add(n);
+            for (int i = 0; i < n; i++) {
+                Item it = batch.get(i);
+                listener.sent(first + i, it.level, it.topic, it.msg, it.origin);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Item it : batch) listener.failed(it.level, it.topic, it.msg, e);
+        }
+        for (int i = 0; i < n; i++) bMsgs[i] = bTopics[i] = bLevels[i] = null;
+    }
+
+    /**
+     * Ngừng nhận cảnh báo mới, gửi nốt hàng đợi (tối đa 2 giây) rồi dừng luồng gửi
+     * @return true nếu luồng gửi đã kết thúc với hàng đợi rỗng (mọi cảnh báo đã qua listener)
+     */
+    public boolean close() {
+        lock.lock();
+        try {
+            closing = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) return depth() == 0;
+        thread.interrupt();
+        return false;
+    }
+}
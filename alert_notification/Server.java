@@ -1,15 +1,15 @@
 package alert_notification;
 
+import com.sun.net.httpserver.HttpServer;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.IOException;
-import java.net.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.Instant;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.*;
@@ -17,37 +17,46 @@ import java.util.concurrent.*;
 
 /**
  * Server.java
- * Máy chủ cảnh báo UDP Multicast
- * - Gửi cảnh báo đến multicast group
- * - Nhận heartbeat / QUIT từ client
- * - Quản lý danh sách client (không trùng ID)
- * - Log auto xuống dòng
+ * Máy chủ cảnh báo UDP Multicast (giao diện Swing; phần mạng nằm trong ServerEngine)
+ * - Gửi cảnh báo đến multicast group theo (level, topic) - xem ChannelMap
+ * - Nhận heartbeat / QUIT từ client (HeartbeatIngest: NIO + Selector, SO_REUSEPORT)
+ * - Quản lý danh sách client (không trùng ID) bằng ClientRegistry, hết hạn theo TimingWheel
+ * - Log giao diện trong LogRing có giới hạn (dòng cũ ghi xuống server-ui.log), hiển thị bằng LogView
  * - Lịch sử lưu file alerts.log
  * - Có chế độ auto send (gửi cảnh báo ngẫu nhiên định kỳ)
+ * - Cảnh báo trùng lặp / vượt tốc độ bị chặn trước khi gửi và gộp vào tóm tắt định kỳ (SuppressionStage)
+ * - Cảnh báo gửi dạng AlertFrame nhị phân (có seq); -Dalert.wire=legacy để gửi text cũ
+ * - Nhận NAK từ client và gửi lại cảnh báo bị mất (RepairService)
+ * - --headless: chạy không giao diện, sự kiện ra console / file / metrics
+ * - -Dalert.metrics.port: xuất metrics (tốc độ gửi, heartbeat, journal...) dạng Prometheus tại /metrics
  */
 public class Server extends JFrame {
 
-    private static final String MULTICAST_GROUP = "230.0.0.1";
-    private static final int PORT = 5000;
-    private static final int HEARTBEAT_PORT = 5001;
-    private static final int CLIENT_TIMEOUT_SECONDS = 20;
-
     private final JComboBox<String> levelCombo;
+    private final JTextField topicField;
     private final JTextField messageField;
-    private final JTextArea logArea;
+    private final LogView logView;
     private final ClientsTableModel clientsModel;
-    private final DefaultListModel<String> historyModel;
-
-    private final ConcurrentHashMap<String, ClientInfo> clients = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
-
-    private ScheduledFuture<?> autoSendTask;
-
-    private static final DateTimeFormatter TIME_FMT =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
-
-    public Server() {
+    private final HistoryListModel historyModel;
+
+    // Log giao diện: giữ N dòng gần nhất trong RAM, dòng cũ hơn ghi xuống server-ui.log
+    private final AlertJournal logSpill = new AlertJournal(
+            Paths.get(System.getProperty("alert.ui.log.spill", "server-ui.log")),
+            4096, 256, AlertJournal.FsyncPolicy.NEVER, 0);
+    private final LogRing logRing = new LogRing(
+            Integer.getInteger("alert.ui.log.lines", 10_000),
+            Long.getLong("alert.ui.log.bytes", 8L << 20), logSpill::tryAppend);
+    private final ServerEngine engine;
+    private final ClientRegistry clients;
+    private final HttpServer metricsExporter;
+
+    private static final DateTimeFormatter TIME_FMT = LineSink.TIME_FMT;
+
+    public Server() throws IOException {
         super("Máy chủ cảnh báo");
+        engine = new ServerEngine(new SinkChain(new UiSink(), new MetricsSink()));
+        clients = engine.clients();
+        metricsExporter = Metrics.startExporter(Metrics.global());
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(950, 600);
         setLocationRelativeTo(null);
@@ -72,6 +81,13 @@ public class Server extends JFrame {
         form.add(levelCombo, gbc);
 
         gbc.gridx = 0; gbc.gridy = 1; gbc.weightx = 0;
+        form.add(new JLabel("Topic:"), gbc);
+
+        topicField = new JTextField();
+        gbc.gridx = 1; gbc.weightx = 1.0;
+        form.add(topicField, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 2; gbc.weightx = 0;
         form.add(new JLabel("Message:"), gbc);
 
         messageField = new JTextField();
@@ -103,22 +119,21 @@ public class Server extends JFrame {
         // Log
         JPanel leftPanel = new JPanel(new BorderLayout());
         leftPanel.setBorder(BorderFactory.createTitledBorder("Log"));
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setLineWrap(true);
-        logArea.setWrapStyleWord(true);
-        JScrollPane logScroll = new JScrollPane(logArea);
-        leftPanel.add(logScroll, BorderLayout.CENTER);
+        logView = new LogView(logRing, null);
+        leftPanel.add(logView, BorderLayout.CENTER);
 
         // Tabs
         JTabbedPane tabbed = new JTabbedPane();
-        clientsModel = new ClientsTableModel();
+        clientsModel = new ClientsTableModel(clients);
         JTable clientsTable = new JTable(clientsModel);
         JScrollPane clientsScroll = new JScrollPane(clientsTable);
         tabbed.addTab("Client", clientsScroll);
 
-        historyModel = new DefaultListModel<>();
+        historyModel = new HistoryListModel(Log.history());
         JList<String> historyList = new JList<>(historyModel);
+        // Cố định kích thước ô để JList không phải đo toàn bộ các dòng
+        historyList.setFixedCellHeight(18);
+        historyList.setFixedCellWidth(600);
         JScrollPane historyScroll = new JScrollPane(historyList);
         tabbed.addTab("Lịch sử", historyScroll);
 
@@ -130,65 +145,42 @@ public class Server extends JFrame {
         autoBtn.addActionListener(e -> toggleAutoSend(autoBtn));
         checkLogBtn.addActionListener(e -> showLogDialog());
 
-        // Load history
-        for (String entry : Log.getHistory()) {
-            historyModel.addElement(entry);
-        }
-
         // Start background tasks
-        startHeartbeatListener();
-        startClientReaper();
-
-        appendLog("Server đã khởi động. Multicast group: " + MULTICAST_GROUP + ":" + PORT, "INFO");
+        clientsModel.start();
+        engine.start();
     }
 
     // ===== Send alert thủ công =====
     private void onSend(ActionEvent e) {
         String level = (String) levelCombo.getSelectedItem();
+        String topic = topicField.getText().trim();
         String msg = messageField.getText().trim();
         if (msg.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please enter a message.", "Thông báo", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        sendAlert(level, msg, "SEND");
-        messageField.setText("");
-    }
-
-    // ===== Gửi alert (chung cho auto + manual) =====
-    private void sendAlert(String level, String msg, String logType) {
-        String payload = "[" + level + "] " + msg;
-        try {
-            sendMulticast(payload);
-            appendLog("Sent alert: " + payload, logType);
-            Log.saveAlert(level, msg);
-            List<String> h = Log.getHistory();
-            if (!h.isEmpty()) historyModel.addElement(h.get(h.size() - 1));
-        } catch (IOException ex) {
-            appendLog("Error sending alert: " + ex.getMessage(), "ERROR");
+        long r = engine.sendAlert(level, topic, msg, "SEND");
+        if (r == ServerEngine.SUPPRESSED) {
+            logRing.add(TIME_FMT.format(Instant.now()) + " [SUPPRESS] Cảnh báo trùng lặp / vượt giới hạn tốc độ, sẽ gửi trong bản tóm tắt: " + msg);
+        } else if (r == ServerEngine.REJECTED) {
+            logRing.add(TIME_FMT.format(Instant.now()) + " [ERROR] Cảnh báo bị bỏ (hàng đợi gửi " + level + " đã đầy hoặc quá lớn cho 1 datagram): " + msg);
         }
+        messageField.setText("");
     }
 
     // ===== Auto send toggle =====
     private void toggleAutoSend(JButton btn) {
-        if (autoSendTask == null || autoSendTask.isCancelled()) {
-            autoSendTask = scheduler.scheduleAtFixedRate(() -> {
-                String[] levels = {"INFO", "WARNING", "ERROR"};
-                String level = levels[new Random().nextInt(levels.length)];
-                String msg = "Auto generated alert at " + TIME_FMT.format(Instant.now());
-                sendAlert(level, msg, "AUTO");
-            }, 0, 15, TimeUnit.SECONDS);
-
-            appendLog("Auto send started (every 15s).", "AUTO");
+        if (!engine.isAutoSending()) {
+            engine.startAutoSend(15);
             btn.setText("Stop Auto");
         } else {
-            autoSendTask.cancel(true);
-            appendLog("Auto send stopped.", "AUTO");
+            engine.stopAutoSend();
             btn.setText("Auto Send");
         }
     }
 
     private void showLogDialog() {
-        JTextArea ta = new JTextArea(logArea.getText());
+        JTextArea ta = new JTextArea(String.join("\n", logRing.snapshot()));
         ta.setEditable(false);
         ta.setLineWrap(true);
         ta.setWrapStyleWord(true);
@@ -197,146 +189,275 @@ public class Server extends JFrame {
         JOptionPane.showMessageDialog(this, sp, "Server Log", JOptionPane.INFORMATION_MESSAGE);
     }
 
-    // ===== Log =====
-    private void appendLog(String text, String type) {
-        String line = TIME_FMT.format(Instant.now()) + " [" + type + "] " + text + "\n";
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(line);
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-        });
-    }
+    // ===== Sự kiện từ engine -> log giao diện + bảng client =====
+    private final class UiSink extends LineSink {
+        @Override
+        protected void line(String line) {
+            logRing.add(line);
+        }
 
-    // ===== Multicast send =====
-    private void sendMulticast(String message) throws IOException {
-        byte[] data = message.getBytes(StandardCharsets.UTF_8);
-        InetAddress group = InetAddress.getByName(MULTICAST_GROUP);
-        DatagramSocket socket = new DatagramSocket();
-        DatagramPacket packet = new DatagramPacket(data, data.length, group, PORT);
-        socket.send(packet);
-        socket.close();
-    }
+        @Override
+        public void clientHeartbeat(String clientId, long intervalMs) {
+            clientsModel.markDirty(clientId);
+        }
 
-    // ===== Heartbeat listener & QUIT =====
-    private void startHeartbeatListener() {
-        scheduler.execute(() -> {
-            try (DatagramSocket socket = new DatagramSocket(HEARTBEAT_PORT)) {
-                appendLog("Heartbeat listener started on port " + HEARTBEAT_PORT, "INFO");
-                byte[] buf = new byte[1024];
-                while (!Thread.currentThread().isInterrupted()) {
-                    DatagramPacket packet = new DatagramPacket(buf, buf.length);
-                    socket.receive(packet);
-                    String recv = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).trim();
-                    InetAddress addr = packet.getAddress();
-                    int port = packet.getPort();
-
-                    if (recv.startsWith("QUIT:")) {
-                        String clientId = recv.substring("QUIT:".length()).trim();
-                        if (clientId.isEmpty()) clientId = addr.getHostAddress();
-                        clients.remove(clientId);
-                        appendLog("Client " + clientId + " đã thoát (QUIT)", "QUIT");
-                        SwingUtilities.invokeLater(() -> clientsModel.setClients(new ArrayList<>(clients.values())));
-                        continue;
-                    }
+        @Override
+        public void clientJoined(String clientId, String ip) {
+            super.clientJoined(clientId, ip);
+            clientsModel.markDirty(clientId);
+        }
 
-                    String clientId;
-                    if (recv.startsWith("HEARTBEAT:")) {
-                        clientId = recv.substring("HEARTBEAT:".length()).trim();
-                        if (clientId.isEmpty()) clientId = addr.getHostAddress();
-                    } else {
-                        clientId = addr.getHostAddress();
-                    }
+        @Override
+        public void clientLeft(String clientId) {
+            super.clientLeft(clientId);
+            clientsModel.markDirty(clientId);
+        }
 
-                    long now = System.currentTimeMillis();
-                    clients.compute(clientId, (k, old) -> {
-                        if (old == null) {
-                            appendLog("New client joined: " + k + " (" + addr.getHostAddress() + ")", "JOIN");
-                            return new ClientInfo(k, addr.getHostAddress(), port, now);
-                        } else {
-                            old.ip = addr.getHostAddress();
-                            old.port = port;
-                            old.lastSeen = now;
-                            return old;
-                        }
-                    });
-                    SwingUtilities.invokeLater(() -> clientsModel.setClients(new ArrayList<>(clients.values())));
-                }
-            } catch (IOException ex) {
-                appendLog("Heartbeat listener error: " + ex.getMessage(), "ERROR");
-            }
-        });
-    }
+        @Override
+        public void clientTimedOut(String clientId) {
+            super.clientTimedOut(clientId);
+            clientsModel.markDirty(clientId);
+        }
 
-    // ===== Client timeout =====
-    private void startClientReaper() {
-        scheduler.scheduleAtFixedRate(() -> {
-            long now = System.currentTimeMillis();
-            List<String> toRemove = new ArrayList<>();
-            for (Map.Entry<String, ClientInfo> en : clients.entrySet()) {
-                if ((now - en.getValue().lastSeen) > CLIENT_TIMEOUT_SECONDS * 1000L) {
-                    toRemove.add(en.getKey());
-                }
-            }
-            for (String k : toRemove) {
-                clients.remove(k);
-                appendLog("Removed client due to timeout: " + k, "TIMEOUT");
-            }
-            if (!toRemove.isEmpty()) {
-                SwingUtilities.invokeLater(() -> clientsModel.setClients(new ArrayList<>(clients.values())));
-            }
-        }, 5, 5, TimeUnit.SECONDS);
+        @Override
+        public void clientRestored(String clientId) {
+            clientsModel.markDirty(clientId);
+        }
     }
 
     private void shutdown() {
-        appendLog("Shutting down server...", "INFO");
-        scheduler.shutdownNow();
+        engine.close();
+        if (metricsExporter != null) metricsExporter.stop(0);
+        clientsModel.stop();
+        logView.stop();
+        historyModel.stop();
+        logSpill.close();
     }
 
-    // ===== ClientInfo & Table =====
-    private static class ClientInfo {
-        final String id;
-        String ip;
-        int port;
-        volatile long lastSeen;
+    // ===== Client table =====
+    /**
+     * Bảng client cập nhật theo khung hình: luồng nhận chỉ đánh dấu ID bẩn,
+     * Swing Timer (-Dalert.ui.fps, mặc định 4 Hz) gom lại rồi sửa danh sách đã sắp xếp
+     * tại chỗ và phát sự kiện theo dòng (insert/update/delete).
+     */
+    static class ClientsTableModel extends AbstractTableModel {
+        // Quá ngưỡng này trong 1 khung thì phát 1 sự kiện update cả bảng thay vì từng dòng
+        private static final int ROW_EVENT_LIMIT = 64;
 
-        ClientInfo(String id, String ip, int port, long lastSeen) {
-            this.id = id; this.ip = ip; this.port = port; this.lastSeen = lastSeen;
+        private final String[] cols = {"Client ID", "IP", "Port", "Last Seen"};
+        private final List<String> rows = new ArrayList<>(); // client ID sắp tăng dần, chỉ dùng trên EDT
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        private final ClientRegistry clients;
+        private final javax.swing.Timer timer;
+
+        ClientsTableModel(ClientRegistry clients) {
+            this.clients = clients;
+            int fps = Math.max(1, Integer.getInteger("alert.ui.fps", 4));
+            timer = new javax.swing.Timer(1000 / fps, e -> publish());
+            timer.setCoalesce(true);
         }
 
-        String lastSeenStr() {
-            return TIME_FMT.format(Instant.ofEpochMilli(lastSeen));
+        void start() {
+            timer.start();
         }
-    }
 
-    private class ClientsTableModel extends AbstractTableModel {
-        private final String[] cols = {"Client ID", "IP", "Port", "Last Seen"};
-        private List<ClientInfo> list = new ArrayList<>();
+        void stop() {
+            timer.stop();
+        }
+
+        /** Gọi từ bất kỳ luồng nào khi client thay đổi (join, heartbeat, quit, timeout) */
+        void markDirty(String clientId) {
+            dirty.add(clientId);
+        }
+
+        /** 1 khung: áp các thay đổi đã đánh dấu vào danh sách đã sắp xếp (EDT, hoặc benchmark) */
+        void publish() {
+            if (dirty.isEmpty()) return;
+            int updates = 0, minRow = Integer.MAX_VALUE, maxRow = -1;
+            for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+                String id = it.next();
+                it.remove();
+                boolean present = clients.contains(id);
+                int idx = indexOf(id);
+                if (!present) {
+                    if (idx >= 0) {
+                        rows.remove(idx);
+                        fireTableRowsDeleted(idx, idx);
+                    }
+                } else if (idx < 0) {
+                    idx = -idx - 1;
+                    rows.add(idx, id);
+                    fireTableRowsInserted(idx, idx);
+                } else {
+                    if (++updates <= ROW_EVENT_LIMIT) fireTableRowsUpdated(idx, idx);
+                    minRow = Math.min(minRow, idx);
+                    maxRow = Math.max(maxRow, idx);
+                }
+            }
+            if (updates > ROW_EVENT_LIMIT) fireTableRowsUpdated(minRow, Math.min(maxRow, rows.size() - 1));
+        }
 
-        public void setClients(List<ClientInfo> newList) {
-            newList.sort(Comparator.comparing(c -> c.id));
-            this.list = newList;
-            fireTableDataChanged();
+        private int indexOf(String id) {
+            int lo = 0, hi = rows.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = rows.get(mid).compareTo(id);
+                if (c < 0) lo = mid + 1;
+                else if (c > 0) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
         }
 
-        @Override public int getRowCount() { return list.size(); }
+        @Override public int getRowCount() { return rows.size(); }
         @Override public int getColumnCount() { return cols.length; }
         @Override public String getColumnName(int column) { return cols[column]; }
         @Override public Object getValueAt(int row, int col) {
-            ClientInfo c = list.get(row);
-            switch (col) {
-                case 0: return c.id;
-                case 1: return c.ip;
-                case 2: return c.port;
-                case 3: return c.lastSeenStr();
-                default: return "";
+            String id = rows.get(row);
+            if (col == 0) return id;
+            synchronized (clients) {
+                int slot = clients.slotOf(id);
+                if (slot < 0) return ""; // đã rời đi, khung sau sẽ xóa dòng
+                switch (col) {
+                    case 1: return clients.ip(slot);
+                    case 2: return clients.port(slot);
+                    case 3: return TIME_FMT.format(Instant.ofEpochMilli(clients.lastSeen(slot)));
+                    default: return "";
+                }
             }
         }
     }
 
+    // ===== Lịch sử: danh sách ảo, chỉ đọc các dòng đang hiển thị =====
+    /**
+     * Trang chưa có trong cache được đọc trên 1 luồng nền (đọc segment cũ có thể phải giải nén 1 khối),
+     * EDT chỉ hiện dòng chờ rồi nhận contentsChanged khi trang về.
+     */
+    private static class HistoryListModel extends AbstractListModel<String> {
+        private static final int PAGE = HistoryStore.STRIDE;
+        private static final int CACHED_PAGES = 32;
+        private static final String LOADING = "…";
+
+        private final HistoryStore store;
+        private int size;
+        private final Map<Integer, List<String>> pages = new LinkedHashMap<Integer, List<String>>(CACHED_PAGES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        private final Set<Integer> loading = new HashSet<>(); // chỉ dùng trên EDT
+        private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "history-loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        HistoryListModel(HistoryStore store) {
+            this.store = store;
+            this.size = store.size();
+            store.addListener(n -> SwingUtilities.invokeLater(() -> grow(n)));
+        }
+
+        private void grow(int n) {
+            if (n <= size) return;
+            int old = size;
+            size = n;
+            // Trang cuối có thể đang được cache khi còn thiếu dòng
+            pages.remove(old / PAGE);
+            fireIntervalAdded(this, old, n - 1);
+        }
+
+        @Override public int getSize() { return size; }
+
+        @Override public String getElementAt(int index) {
+            int p = index / PAGE;
+            List<String> rows = pages.get(p);
+            if (rows == null) {
+                load(p);
+                return LOADING;
+            }
+            int i = index - p * PAGE;
+            return i < rows.size() ? rows.get(i) : "";
+        }
+
+        private void load(int p) {
+            if (!loading.add(p)) return;
+            int requestedAt = size;
+            try {
+                loader.execute(() -> {
+                    List<String> rows = store.getRange(p * PAGE, PAGE);
+                    SwingUtilities.invokeLater(() -> loaded(p, rows, requestedAt));
+                });
+            } catch (RejectedExecutionException e) {
+                loading.remove(p);
+            }
+        }
+
+        private void loaded(int p, List<String> rows, int requestedAt) {
+            loading.remove(p);
+            // Trang cuối đọc trước khi có thêm dòng: không cache, lần vẽ tới sẽ đọc lại
+            if (rows.size() >= Math.min(PAGE, size - p * PAGE) || size == requestedAt) pages.put(p, rows);
+            int first = p * PAGE;
+            int last = Math.min(size, first + PAGE) - 1;
+            if (last >= first) fireContentsChanged(this, first, last);
+        }
+
+        void stop() {
+            loader.shutdownNow();
+        }
+    }
+
     public static void main(String[] args) {
+        List<String> flags = Arrays.asList(args);
+        if (flags.contains("--headless") || GraphicsEnvironment.isHeadless()) {
+            runHeadless(flags.contains("--auto"));
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
-            Server s = new Server();
+            Server s;
+            try {
+                s = new Server();
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "Không thể khởi tạo multicast: " + e.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             s.setVisible(true);
             Runtime.getRuntime().addShutdownHook(new Thread(s::shutdown));
         });
     }
+
+    /**
+     * Chạy không giao diện: sự kiện ra stdout + file (-Dalert.sink.file, mặc định server-events.log),
+     * tóm tắt metrics mỗi -Dalert.metrics.intervalSec giây (0 = tắt). --auto để bật auto send.
+     */
+    private static void runHeadless(boolean autoSend) {
+        FileLogSink file = new FileLogSink(Paths.get(System.getProperty("alert.sink.file", "server-events.log")));
+        MetricsSink metrics = new MetricsSink();
+        ServerEngine engine;
+        try {
+            engine = new ServerEngine(new SinkChain(new ConsoleSink(), file, metrics));
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể khởi tạo multicast: " + e.getMessage());
+            file.close();
+            System.exit(1);
+            return;
+        }
+        engine.start();
+        HttpServer exporter = Metrics.startExporter(Metrics.global());
+        if (autoSend) engine.startAutoSend(15);
+        long interval = Long.getLong("alert.metrics.intervalSec", 60L);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        if (interval > 0) {
+            reporter.scheduleAtFixedRate(() -> System.out.println("[METRICS] " + metrics.summary()),
+                    interval, interval, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            reporter.shutdownNow();
+            engine.close();
+            if (exporter != null) exporter.stop(0);
+            System.out.println("[METRICS] " + metrics.summary());
+            file.close();
+        }));
+    }
 }
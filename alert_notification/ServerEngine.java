@@ -0,0 +1,357 @@
+package alert_notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServerEngine.java
+ * Phần mạng + trạng thái của server, không phụ thuộc Swing
+ * - Gửi cảnh báo qua SendScheduler (luồng gửi riêng, hàng đợi theo level, pacing) -> MulticastChannels,
+ *   lưu lịch sử bằng Log sau khi gửi xong
+ * - Nhận heartbeat / QUIT / NAK / CATCHUP (HeartbeatIngest), quản lý client (ClientRegistry + TimingWheel)
+ * - Trả lời heartbeat bằng HBACK kèm khoảng heartbeat theo tải (HeartbeatAdvisor); timeout của từng client
+ *   suy ra từ khoảng đã khuyên
+ * - Client mới vào được phát lại các cảnh báo gần đây bằng unicast (CatchUpService)
+ * - Chặn bão cảnh báo trước khi gửi (SuppressionStage): trùng lặp, giới hạn tốc độ, tóm tắt định kỳ
+ * - Auto send định kỳ
+ * - Snapshot định kỳ (ServerSnapshot): danh sách client + seq/epoch; khởi động lại chỉ đọc snapshot
+ *   và phần đuôi journal, seq đánh tiếp thay vì về 0
+ * - Mọi sự kiện được báo qua AlertSink (giao diện, console, file, metrics)
+ *
+ * Gộp cảnh báo vào container: -Dalert.send.batch = auto (mặc định: chỉ khi mọi client đã báo hỗ trợ) | on | off
+ * Snapshot: -Dalert.snapshot.file (mặc định alerts.snapshot), -Dalert.snapshot.intervalMs (mặc định 30000, 0 = tắt)
+ */
+public class ServerEngine implements Closeable {
+
+    public static final int HEARTBEAT_PORT = 5001;
+    static final int CLIENT_TIMEOUT_SECONDS = 20;
+    /** sendAlert(): đã vào hàng đợi gửi (seq được báo sau qua AlertSink.alertSent) */
+    public static final long QUEUED = 0;
+    /** sendAlert(): cảnh báo bị SuppressionStage chặn (sẽ nằm trong tóm tắt) */
+    public static final long SUPPRESSED = -2;
+    /** sendAlert(): hàng đợi gửi của level đã đầy, hoặc cảnh báo không vừa 1 datagram */
+    public static final long REJECTED = -3;
+
+    private final AlertSink sink;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final MulticastChannels channels;
+    private final SendScheduler sendQueue;
+    private final String batchMode;
+    private final long reaperTickMs = Math.max(1, Long.getLong("alert.client.reaperTickMs", 250L));
+    private final ClientRegistry clients = new ClientRegistry(
+            Long.getLong("alert.client.timeoutMs", CLIENT_TIMEOUT_SECONDS * 1000L), reaperTickMs,
+            Integer.getInteger("alert.client.capacity", 1024));
+    private final HeartbeatIngest ingest = new HeartbeatIngest(HEARTBEAT_PORT, new IngestHandler());
+    private final HeartbeatAdvisor advisor = HeartbeatAdvisor.fromSystemProperties(clients.timeoutMs());
+    private final SuppressionStage suppression = SuppressionStage.fromSystemProperties(Metrics.global()); // null = tắt
+    private final CatchUpService catchUp; // null = tắt
+
+    // Lát cắt cho snapshot: seq cuối mỗi channel + số bản ghi đã đưa vào journal, cập nhật trên luồng gửi
+    private final Object cut = new Object();
+    private final long[] lastSent;
+    private int journaled = -1;
+    private final Path snapshotFile = Paths.get(System.getProperty("alert.snapshot.file", "alerts.snapshot"));
+    private final long snapshotMs = Long.getLong("alert.snapshot.intervalMs", 30_000L);
+    private final Object snapshotLock = new Object();
+    private boolean lastSnapshotWritten; // giữ snapshotLock
+    private final Histogram snapshotWriteUs;
+    private final ServerSnapshot.Recovery recovery;
+    private final long recoveryMs;
+
+    private ScheduledFuture<?> autoSendTask;
+    private volatile boolean closed;
+
+    public ServerEngine(AlertSink sink) throws IOException {
+        this.sink = sink;
+        ChannelMap map = ChannelMap.fromSystemProperties();
+        long t0 = System.nanoTime();
+        HistoryStore store = null;
+        try {
+            store = Log.history();
+        } catch (IOException e) {
+            System.err.println("⚠ Không thể mở chỉ mục lịch sử: " + e.getMessage());
+        }
+        this.recovery = snapshotMs > 0
+                ? ServerSnapshot.recover(snapshotFile, map, store, clients, System.currentTimeMillis())
+                : ServerSnapshot.fresh(map, System.currentTimeMillis());
+        this.recoveryMs = (System.nanoTime() - t0) / 1_000_000;
+        this.lastSent = recovery.lastSeq.clone();
+        if (store != null) journaled = store.size();
+        this.channels = new MulticastChannels(map, recovery.epoch,
+                "legacy".equalsIgnoreCase(System.getProperty("alert.wire")),
+                Integer.getInteger("alert.retransmit.ring", 4096),
+                Double.parseDouble(System.getProperty("alert.repair.rate", "2000")),
+                Integer.getInteger("alert.repair.multicastThreshold", 3),
+                Long.getLong("alert.repair.suppressMs", 200L));
+        this.batchMode = "legacy".equalsIgnoreCase(System.getProperty("alert.wire"))
+                ? "off" : System.getProperty("alert.send.batch", "auto").trim().toLowerCase();
+        this.catchUp = CatchUpService.fromSystemProperties(channels.map(), Metrics.global());
+        this.sendQueue = SendScheduler.fromSystemProperties(channels, new SendListener(), this::batchAllowed,
+                Metrics.global());
+        for (int c = 0; c < map.size(); c++) channels.sender(c).continueFrom(lastSent[c]);
+        Metrics m = Metrics.global();
+        snapshotWriteUs = m.histogram("alert_snapshot_write_seconds", "Time to write one server snapshot", 1e-6);
+        m.gauge("alert_clients", "Clients currently registered", clients::size);
+        m.gauge("alert_ingest_packets", "Datagrams read by the heartbeat listener", ingest::packets);
+        m.gauge("alert_heartbeat_advised_ms", "Heartbeat interval currently advised to clients", advisor::advisedMs);
+        m.gauge("alert_heartbeat_acks", "HBACK replies sent", ingest::acks);
+        m.gauge("alert_heartbeat_acks_dropped", "HBACK replies dropped because the socket was full", ingest::acksDropped);
+    }
+
+    public void start() {
+        if (catchUp != null) {
+            try {
+                catchUp.seed(Log.history());
+            } catch (IOException e) {
+                sink.log("ERROR", "⚠ Không nạp được lịch sử cho catch-up: " + e.getMessage());
+            }
+            catchUp.start();
+        }
+        reportRecovery();
+        sendQueue.start();
+        startHeartbeatListener();
+        startClientReaper();
+        startHeartbeatAdvisor();
+        startSuppressionSummaries();
+        startSnapshots();
+        ChannelMap map = channels.map();
+        for (int c = 0; c < map.size(); c++) {
+            InetSocketAddress a = map.address(c);
+            sink.log("INFO", "Multicast channel " + c + ": " + a.getAddress().getHostAddress() + ":" + a.getPort());
+        }
+        sink.log("INFO", "Server đã khởi động.");
+    }
+
+    public ClientRegistry clients() {
+        return clients;
+    }
+
+    // ===== Gửi alert (chung cho auto + manual) =====
+    /**
+     * Không chờ mạng / đĩa: cảnh báo được xếp hàng, luồng gửi báo kết quả qua AlertSink
+     * @param origin loại dòng log ("SEND", "AUTO", ...)
+     * @return QUEUED, SUPPRESSED nếu bị chặn, REJECTED nếu hàng đợi đầy hoặc cảnh báo không vừa 1 datagram
+     */
+    public long sendAlert(String level, String topic, String msg, String origin) {
+        if (!AlertFrame.fits(topic, msg)) {
+            sink.log("ERROR", "⚠ Cảnh báo quá lớn cho 1 datagram (tối đa " + AlertFrame.MAX_DATAGRAM + " byte), bị bỏ");
+            return REJECTED;
+        }
+        if (suppression != null
+                && suppression.check(level, topic, msg, System.currentTimeMillis()) != SuppressionStage.Decision.PASS) {
+            return SUPPRESSED;
+        }
+        return send(level, topic, msg, origin);
+    }
+
+    private long send(String level, String topic, String msg, String origin) {
+        return sendQueue.offer(level, topic, msg, origin) ? QUEUED : REJECTED;
+    }
+
+    private boolean batchAllowed() {
+        switch (batchMode) {
+            case "on": return true;
+            case "off": return false;
+            default: return clients.allSupportBatch();
+        }
+    }
+
+    /** Chạy trên luồng gửi của SendScheduler */
+    private final class SendListener implements SendScheduler.Listener {
+        @Override
+        public void sent(long seq, String level, String topic, String msg, String origin) {
+            sink.alertSent(seq, level, topic, msg, origin);
+            int c = channels.map().route(level, topic);
+            if (catchUp != null) {
+                catchUp.record(c, channels.sender(c).getEpoch(), seq, level, topic, msg, System.currentTimeMillis());
+            }
+            synchronized (cut) {
+                // Không chờ đĩa: journal đầy thì bản ghi bị bỏ (metric alert_journal_failed_records)
+                boolean saved = Log.saveAlert(level, topic, msg);
+                lastSent[c] = seq;
+                if (journaled >= 0 && saved) journaled++;
+            }
+        }
+
+        @Override
+        public void failed(String level, String topic, String msg, Exception error) {
+            sink.log("ERROR", "Error sending alert: " + error.getMessage());
+        }
+    }
+
+    // ===== Tóm tắt cảnh báo bị chặn =====
+    private void startSuppressionSummaries() {
+        if (suppression == null) return;
+        long period = suppression.summaryMs();
+        // Tóm tắt không đi qua SuppressionStage: số lượng đã bị giới hạn sẵn
+        scheduler.scheduleAtFixedRate(() -> {
+            for (SuppressionStage.Summary s : suppression.drainSummaries(System.currentTimeMillis())) {
+                send(s.level, s.topic, s.msg, "SUMMARY");
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // ===== Snapshot =====
+    private void reportRecovery() {
+        ServerSnapshot.Recovery r = recovery;
+        long total = 0;
+        for (long s : r.lastSeq) total += s;
+        if (total > 0 || !r.restoredClients.isEmpty()) {
+            sink.log("INFO", "Khôi phục trong " + recoveryMs + " ms: " + r.restoredClients.size() + " client, "
+                    + r.tailRecords + " bản ghi journal sau snapshot, epoch " + r.epoch
+                    + (r.sameEpoch ? " (giữ nguyên)" : " (mới)") + ", seq cuối theo channel " + Arrays.toString(r.lastSeq));
+        }
+        for (String id : r.restoredClients) sink.clientRestored(id);
+    }
+
+    private void startSnapshots() {
+        if (snapshotMs <= 0) return;
+        // Ghi trên luồng scheduler, không chặn luồng gửi / luồng nhận heartbeat
+        scheduler.scheduleWithFixedDelay(() -> writeSnapshot(false, false), snapshotMs, snapshotMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param clean chỉ true khi hàng đợi gửi đã xả hết: seq và journal khớp nhau
+     * @param last  snapshot lúc đóng; sau đó snapshot định kỳ còn chờ không được ghi đè
+     */
+    private void writeSnapshot(boolean clean, boolean last) {
+        if (snapshotMs <= 0) return;
+        long t0 = System.nanoTime();
+        synchronized (snapshotLock) {
+            if (lastSnapshotWritten) return;
+            lastSnapshotWritten = last;
+            ServerSnapshot s;
+            synchronized (cut) {
+                s = new ServerSnapshot(System.currentTimeMillis(), clean, recovery.epoch, journaled, lastSent);
+            }
+            try {
+                s.write(snapshotFile, clients);
+            } catch (IOException e) {
+                sink.log("ERROR", "⚠ Không ghi được snapshot: " + e.getMessage());
+                return;
+            }
+        }
+        snapshotWriteUs.record((System.nanoTime() - t0) / 1000);
+    }
+
+    // ===== Auto send =====
+    public synchronized boolean isAutoSending() {
+        return autoSendTask != null && !autoSendTask.isCancelled();
+    }
+
+    public synchronized void startAutoSend(long periodSec) {
+        if (isAutoSending()) return;
+        autoSendTask = scheduler.scheduleAtFixedRate(() -> {
+            String level = AlertFrame.LEVELS[new Random().nextInt(AlertFrame.LEVELS.length)];
+            String msg = "Auto generated alert at " + LineSink.TIME_FMT.format(Instant.now());
+            sendAlert(level, "", msg, "AUTO");
+        }, 0, periodSec, TimeUnit.SECONDS);
+        sink.log("AUTO", "Auto send started (every " + periodSec + "s).");
+    }
+
+    public synchronized void stopAutoSend() {
+        if (!isAutoSending()) return;
+        autoSendTask.cancel(true);
+        sink.log("AUTO", "Auto send stopped.");
+    }
+
+    // ===== Heartbeat listener & QUIT =====
+    private void startHeartbeatListener() {
+        try {
+            int n = ingest.start();
+            sink.log("INFO", "Heartbeat listener started on port " + HEARTBEAT_PORT + " (" + n + " channel)");
+        } catch (IOException ex) {
+            sink.log("ERROR", "Heartbeat listener error: " + ex.getMessage());
+        }
+    }
+
+    private final class IngestHandler implements HeartbeatIngest.Handler {
+        @Override
+        public int onHeartbeat(String clientId, int capabilities, InetSocketAddress from) {
+            // Chỉ client báo CAP_HBACK mới theo khoảng khuyên dùng; client cũ giữ timeout cố định
+            int advised = (capabilities & ClientRegistry.CAP_HBACK) != 0 ? advisor.next() : 0;
+            long timeout = advised > 0 ? advisor.timeoutFor(advised) : clients.timeoutMs();
+            long interval = clients.touch(clientId, capabilities, from, System.currentTimeMillis(), timeout);
+            if (interval < 0) {
+                sink.clientJoined(clientId, from.getAddress().getHostAddress());
+                if (catchUp != null && catchUp.onJoin()) {
+                    // Chỉ phát lại các level client đăng ký; client cũ không báo thì phát lại mọi level
+                    int levels = ClientRegistry.levelsOf(capabilities);
+                    catchUp.request(clientId, from, levels < 0 ? CatchUpService.ALL_LEVELS : levels, 0, 0);
+                }
+            }
+            sink.clientHeartbeat(clientId, interval);
+            return advised;
+        }
+
+        @Override
+        public void onQuit(String clientId, InetSocketAddress from) {
+            clients.remove(clientId);
+            if (catchUp != null) catchUp.cancel(clientId);
+            sink.clientLeft(clientId);
+        }
+
+        @Override
+        public void onCatchUp(String body, InetSocketAddress from) {
+            if (catchUp == null) return;
+            if (!catchUp.onRequest(body, from)) {
+                sink.log("ERROR", "CATCHUP không hợp lệ từ " + from.getAddress().getHostAddress() + ": CATCHUP:" + body);
+            }
+        }
+
+        @Override
+        public void onNak(String body, InetSocketAddress from) {
+            if (!channels.onNak(body, from)) {
+                sink.log("ERROR", "NAK không hợp lệ từ " + from.getAddress().getHostAddress() + ": NAK:" + body);
+            }
+        }
+    }
+
+    // ===== Khoảng heartbeat theo tải =====
+    private void startHeartbeatAdvisor() {
+        scheduler.scheduleAtFixedRate(() -> advisor.update(clients.size(), ingest.packets(), System.nanoTime()),
+                0, 1, TimeUnit.SECONDS);
+    }
+
+    // ===== Client timeout =====
+    private void startClientReaper() {
+        List<String> expired = new ArrayList<>();
+        // Mỗi tick chỉ chạm tới các client thực sự hết hạn
+        scheduler.scheduleAtFixedRate(() -> {
+            clients.expire(System.currentTimeMillis(), expired);
+            for (String id : expired) sink.clientTimedOut(id);
+            expired.clear();
+        }, reaperTickMs, reaperTickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        sink.log("INFO", "Shutting down server...");
+        scheduler.shutdownNow();
+        ingest.close();
+        boolean drained = sendQueue.close();
+        if (!drained) {
+            sink.log("ERROR", "⚠ Hàng đợi gửi chưa xả hết khi đóng (" + sendQueue.depth()
+                    + " cảnh báo), snapshot không đánh dấu clean");
+        }
+        // Chưa xả hết: lần khởi động sau đọc phần đuôi journal như khi bị dừng đột ngột
+        writeSnapshot(drained, true);
+        if (catchUp != null) catchUp.close();
+        channels.close();
+        Log.shutdown();
+    }
+}
@@ -0,0 +1,151 @@
+package alert_notification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ServerSnapshot.java
+ * Ảnh chụp nhị phân trạng thái server để khởi động lại nhanh (mặc định alerts.snapshot cạnh alerts.log)
+ * - epoch, seq cuối của từng channel và số bản ghi journal tại cùng 1 lát cắt (lấy trên luồng gửi)
+ * - Danh sách client (ClientRegistry.writeTo)
+ * - Ghi ra file .tmp rồi đổi tên nguyên tử: file đọc được luôn là 1 snapshot hoàn chỉnh
+ * - clean = chụp lúc tắt server bình thường (hàng đợi gửi đã xả hết)
+ *
+ * Khởi động lại (recover): seq = seq trong snapshot + số bản ghi journal sau lát cắt thuộc channel đó;
+ * chỉ mục lịch sử (HistoryStore) vốn đã lưu trên đĩa nên chỉ phần đuôi sau snapshot phải đọc.
+ * Giữ nguyên epoch chỉ khi snapshot clean và journal khớp; ngược lại sang epoch mới (seq vẫn đánh tiếp)
+ * để client không coi cảnh báo mới là bản trùng của cảnh báo đã gửi nhưng chưa kịp ghi journal.
+ *
+ * Định dạng (big-endian): magic "ALSN"(4) version(4) takenAt(8) clean(1) epoch(4) journalRecords(4)
+ *   channels(4) lastSeq(8 x channels) rồi phần client của ClientRegistry
+ */
+public final class ServerSnapshot {
+
+    private static final int MAGIC = 0x414C534E; // "ALSN"
+    private static final int VERSION = 1;
+    private static final int TAIL_CHUNK = 4096;
+
+    public final long takenAt;
+    public final boolean clean;
+    public final int epoch;
+    /** Số bản ghi alerts.log (đánh số như HistoryStore) tại lát cắt, -1 nếu không rõ */
+    public final int journalRecords;
+    public final long[] lastSeq;
+
+    public ServerSnapshot(long takenAt, boolean clean, int epoch, int journalRecords, long[] lastSeq) {
+        this.takenAt = takenAt;
+        this.clean = clean;
+        this.epoch = epoch;
+        this.journalRecords = journalRecords;
+        this.lastSeq = lastSeq.clone();
+    }
+
+    /** Kết quả khôi phục dùng để dựng lại MulticastChannels */
+    public static final class Recovery {
+        public final int epoch;
+        public final long[] lastSeq;
+        public final boolean sameEpoch;
+        public final int tailRecords;
+        public final List<String> restoredClients;
+
+        Recovery(int epoch, long[] lastSeq, boolean sameEpoch, int tailRecords, List<String> restoredClients) {
+            this.epoch = epoch;
+            this.lastSeq = lastSeq;
+            this.sameEpoch = sameEpoch;
+            this.tailRecords = tailRecords;
+            this.restoredClients = restoredClients;
+        }
+    }
+
+    /**
+     * Ghi snapshot cùng danh sách client
+     */
+    public void write(Path file, ClientRegistry registry) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(takenAt);
+            out.writeBoolean(clean);
+            out.writeInt(epoch);
+            out.writeInt(journalRecords);
+            out.writeInt(lastSeq.length);
+            for (long s : lastSeq) out.writeLong(s);
+            registry.writeTo(out);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Hệ thống file không hỗ trợ đổi tên nguyên tử
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Không dùng snapshot: epoch mới, seq từ 0 */
+    public static Recovery fresh(ChannelMap map, long now) {
+        return new Recovery((int) (now / 1000), new long[map.size()], false, 0, new ArrayList<>());
+    }
+
+    /**
+     * Đọc snapshot (nếu có), nạp client vào registry, rồi tính epoch + seq để tiếp tục
+     * @param store chỉ mục lịch sử, null nếu không mở được (khi đó không đọc phần đuôi)
+     */
+    public static Recovery recover(Path file, ChannelMap map, HistoryStore store, ClientRegistry registry, long now) {
+        int freshEpoch = (int) (now / 1000);
+        long[] seq = new long[map.size()];
+        List<String> restored = new ArrayList<>();
+        Recovery r;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("sai định dạng");
+            long takenAt = in.readLong();
+            boolean clean = in.readBoolean();
+            int epoch = in.readInt();
+            int journalRecords = in.readInt();
+            long[] saved = new long[in.readInt()];
+            for (int c = 0; c < saved.length; c++) saved[c] = in.readLong();
+
+            int size = store == null ? -1 : store.size();
+            if (saved.length != map.size()) {
+                // ChannelMap đã đổi: seq cũ không còn đúng channel, đánh số lại từ đầu
+                r = new Recovery(Math.max(freshEpoch, epoch + 1), seq, false, 0, restored);
+            } else {
+                System.arraycopy(saved, 0, seq, 0, seq.length);
+                int tail = 0;
+                if (journalRecords >= 0 && size > journalRecords) tail = countTail(store, map, journalRecords, size, seq);
+                boolean same = clean && size >= 0 && size == journalRecords;
+                r = new Recovery(same ? epoch : Math.max(freshEpoch, epoch + 1), seq, same, tail, restored);
+            }
+            registry.readFrom(in, takenAt, now, restored);
+        } catch (NoSuchFileException e) {
+            return fresh(map, now);
+        } catch (IOException e) {
+            // Client đã đọc được trước chỗ hỏng vẫn giữ (dữ liệu hợp lệ), seq thì không tin được
+            System.err.println("⚠ Bỏ qua snapshot " + file + ": " + e.getMessage());
+            return new Recovery(freshEpoch, new long[map.size()], false, 0, restored);
+        }
+        return r;
+    }
+
+    /** Cộng số bản ghi journal [from, to) vào seq của channel tương ứng */
+    private static int countTail(HistoryStore store, ChannelMap map, int from, int to, long[] seq) {
+        int n = 0;
+        for (int rec = from; rec < to; rec += TAIL_CHUNK) {
+            for (String line : store.getRange(rec, Math.min(TAIL_CHUNK, to - rec))) {
+                int level = HistoryStore.levelOf(line);
+                if (level < 0) continue;
+                seq[map.route(AlertFrame.LEVELS[level], Log.topicOf(line))]++;
+                n++;
+            }
+        }
+        return n;
+    }
+}
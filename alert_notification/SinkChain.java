@@ -0,0 +1,94 @@
+package alert_notification;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SinkChain.java
+ * Chuyển mỗi sự kiện tới nhiều AlertSink theo thứ tự đăng ký
+ * - Thêm/bớt sink lúc đang chạy được (CopyOnWriteArrayList, duyệt không khóa)
+ * - Sink ném lỗi không làm hỏng các sink sau
+ */
+public class SinkChain implements AlertSink {
+
+    private final List<AlertSink> sinks = new CopyOnWriteArrayList<>();
+
+    public SinkChain(AlertSink... initial) {
+        for (AlertSink s : initial) add(s);
+    }
+
+    public SinkChain add(AlertSink sink) {
+        if (sink != null) sinks.add(sink);
+        return this;
+    }
+
+    public void remove(AlertSink sink) {
+        sinks.remove(sink);
+    }
+
+    private interface Event {
+        void fire(AlertSink s);
+    }
+
+    private void each(Event e) {
+        for (AlertSink s : sinks) {
+            try {
+                e.fire(s);
+            } catch (RuntimeException ex) {
+                System.err.println("⚠ Sink " + s.getClass().getSimpleName() + " lỗi: " + ex);
+            }
+        }
+    }
+
+    @Override
+    public void alertSent(long seq, String level, String topic, String msg, String origin) {
+        each(s -> s.alertSent(seq, level, topic, msg, origin));
+    }
+
+    @Override
+    public void clientHeartbeat(String clientId, long intervalMs) {
+        // Đường nóng: không tạo lambda, nhưng vẫn cô lập lỗi từng sink như each()
+        for (AlertSink s : sinks) {
+            try {
+                s.clientHeartbeat(clientId, intervalMs);
+            } catch (RuntimeException ex) {
+                System.err.println("⚠ Sink " + s.getClass().getSimpleName() + " lỗi: " + ex);
+            }
+        }
+    }
+
+    @Override
+    public void clientJoined(String clientId, String ip) {
+        each(s -> s.clientJoined(clientId, ip));
+    }
+
+    @Override
+    public void clientLeft(String clientId) {
+        each(s -> s.clientLeft(clientId));
+    }
+
+    @Override
+    public void clientTimedOut(String clientId) {
+        each(s -> s.clientTimedOut(clientId));
+    }
+
+    @Override
+    public void clientRestored(String clientId) {
+        each(s -> s.clientRestored(clientId));
+    }
+
+    @Override
+    public void alertReceived(int level, String text, long seq, long latencyMs, boolean recovered) {
+        each(s -> s.alertReceived(level, text, seq, latencyMs, recovered));
+    }
+
+    @Override
+    public void alertsLost(int count) {
+        each(s -> s.alertsLost(count));
+    }
+
+    @Override
+    public void log(String type, String text) {
+        each(s -> s.log(type, text));
+    }
+}
@@ -0,0 +1,291 @@
+package alert_notification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SuppressionStage.java
+ * Chặn bão cảnh báo trước khi gửi multicast / ghi alerts.log
+ * - Khử trùng lặp: cùng (level, topic, nội dung đã chuẩn hóa) trong cửa sổ windowMs chỉ gửi bản đầu tiên;
+ *   chuẩn hóa = chữ thường, gộp khoảng trắng; gộp dãy chữ số thành '#' chỉ khi bật cho level đó
+ *   (không bao giờ áp cho ERROR: lỗi từ node-7 và node-12 là 2 cảnh báo khác nhau)
+ * - Giới hạn tốc độ theo level bằng token bucket (rate/giây, burst = rate * burstSec)
+ * - Bản bị chặn được đếm theo khóa; drainSummaries() định kỳ trả về cảnh báo tóm tắt "N lần lặp lại"
+ * - Bộ nhớ có giới hạn: LRU tối đa maxEntries khóa, khóa bị đẩy ra vẫn giữ số đếm tới lần tóm tắt kế tiếp
+ * - Tóm tắt riêng chỉ cho nội dung lặp lại, tối đa maxSummaries mỗi lần; phần còn lại gộp thành 1 dòng cho mỗi level
+ *
+ * Cấu hình (fromSystemProperties):
+ * - alert.suppress = true | false (mặc định true)
+ * - alert.suppress.windowMs = cửa sổ khử trùng lặp (mặc định 10000, 0 = tắt khử trùng lặp)
+ * - alert.suppress.maxEntries = số khóa tối đa (mặc định 4096)
+ * - alert.suppress.rate = tốc độ theo level, vd. "INFO:20,WARNING:50,ERROR:100" (0 = không giới hạn)
+ * - alert.suppress.burstSec = burst tính theo số giây của rate (mặc định 2)
+ * - alert.suppress.summaryMs = chu kỳ gửi tóm tắt (mặc định 5000)
+ * - alert.suppress.foldDigits = các level gộp chữ số khi so trùng, vd. "INFO,WARNING" (mặc định rỗng; ERROR bị bỏ qua)
+ */
+public class SuppressionStage {
+
+    public enum Decision { PASS, DUPLICATE, RATE_LIMITED }
+
+    /** Cảnh báo tóm tắt cần gửi */
+    public static final class Summary {
+        public final String level;
+        public final String topic;
+        public final String msg;
+
+        Summary(String level, String topic, String msg) {
+            this.level = level;
+            this.topic = topic;
+            this.msg = msg;
+        }
+    }
+
+    private static final class Tracked {
+        final int level;
+        final String topic;
+        final String sample; // nội dung gốc của bản đầu tiên, dùng trong tóm tắt
+        long passedAt;       // lần gần nhất được gửi đi, dùng cho cửa sổ khử trùng lặp
+        int suppressed;
+
+        Tracked(int level, String topic, String sample) {
+            this.level = level;
+            this.topic = topic;
+            this.sample = sample;
+        }
+    }
+
+    private final long windowMs;
+    private final int maxEntries;
+    private final int maxSummaries;
+    private final long summaryMs;
+    private final boolean[] foldDigits; // theo level; ERROR luôn false
+
+    // Token bucket theo level (cùng cách với RepairService)
+    private final double[] rate;
+    private final double[] burst;
+    private final double[] tokens;
+    private final long[] lastRefillNanos;
+
+    private final LinkedHashMap<String, Tracked> entries;
+    private final List<Tracked> evicted = new ArrayList<>(); // bị LRU đẩy ra khi còn số đếm
+    // Khi evicted cũng đầy: chỉ giữ tổng theo level
+    private final int[] evictedOverflow = new int[AlertFrame.LEVELS.length];
+    private final int[] evictedOverflowKeys = new int[AlertFrame.LEVELS.length];
+
+    private final LongAdder[] duplicates = new LongAdder[AlertFrame.LEVELS.length];
+    private final LongAdder[] rateLimited = new LongAdder[AlertFrame.LEVELS.length];
+
+    /**
+     * @param ratePerSec theo chỉ số level (AlertFrame.LEVELS), <= 0 = không giới hạn
+     * @param foldDigits theo chỉ số level: gộp dãy chữ số khi so trùng; bị bỏ qua với ERROR
+     */
+    public SuppressionStage(long windowMs, int maxEntries, double[] ratePerSec, double burstSec,
+                            long summaryMs, boolean[] foldDigits, Metrics metrics) {
+        this.windowMs = windowMs;
+        this.maxEntries = Math.max(16, maxEntries);
+        this.maxSummaries = 16;
+        this.summaryMs = Math.max(100, summaryMs);
+        int n = AlertFrame.LEVELS.length;
+        this.rate = new double[n];
+        this.burst = new double[n];
+        this.tokens = new double[n];
+        this.lastRefillNanos = new long[n];
+        this.foldDigits = new boolean[n];
+        for (int i = 0; i < n && i < foldDigits.length; i++) {
+            this.foldDigits[i] = foldDigits[i] && i != AlertFrame.ERROR;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            rate[i] = i < ratePerSec.length ? ratePerSec[i] : 0;
+            burst[i] = Math.max(1, rate[i] * burstSec);
+            tokens[i] = burst[i];
+            lastRefillNanos[i] = now;
+            duplicates[i] = metrics.counter("alert_suppressed_total", "Alerts held back by the suppression stage",
+                    "level", AlertFrame.LEVELS[i], "reason", "duplicate");
+            rateLimited[i] = metrics.counter("alert_suppressed_total", "Alerts held back by the suppression stage",
+                    "level", AlertFrame.LEVELS[i], "reason", "rate");
+        }
+        this.entries = new LinkedHashMap<String, Tracked>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tracked> eldest) {
+                if (size() <= SuppressionStage.this.maxEntries) return false;
+                Tracked e = eldest.getValue();
+                if (e.suppressed > 0) {
+                    if (evicted.size() < SuppressionStage.this.maxEntries) {
+                        evicted.add(e);
+                    } else {
+                        evictedOverflow[e.level] += e.suppressed;
+                        evictedOverflowKeys[e.level]++;
+                    }
+                }
+                return true;
+            }
+        };
+        metrics.gauge("alert_suppress_entries", "Keys tracked by the suppression stage", this::size);
+    }
+
+    /** @return null nếu -Dalert.suppress=false */
+    public static SuppressionStage fromSystemProperties(Metrics metrics) {
+        if (!Boolean.parseBoolean(System.getProperty("alert.suppress", "true"))) return null;
+        double[] rates = new double[AlertFrame.LEVELS.length];
+        rates[AlertFrame.INFO] = 20;
+        rates[AlertFrame.WARNING] = 50;
+        rates[AlertFrame.ERROR] = 100;
+        String spec = System.getProperty("alert.suppress.rate", "");
+        for (String part : spec.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon <= 0) continue;
+            String level = part.substring(0, colon).trim().toUpperCase();
+            try {
+                double r = Double.parseDouble(part.substring(colon + 1).trim());
+                for (int i = 0; i < AlertFrame.LEVELS.length; i++) {
+                    if (AlertFrame.LEVELS[i].equals(level)) rates[i] = r;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("⚠ alert.suppress.rate không hợp lệ: " + part);
+            }
+        }
+        boolean[] fold = new boolean[AlertFrame.LEVELS.length];
+        for (String part : System.getProperty("alert.suppress.foldDigits", "").split(",")) {
+            String level = part.trim().toUpperCase();
+            if (level.isEmpty()) continue;
+            int lv = AlertFrame.levelCode(level);
+            if (lv == AlertFrame.ERROR || !AlertFrame.LEVELS[lv].equals(level)) {
+                System.err.println("⚠ alert.suppress.foldDigits bỏ qua level: " + part.trim());
+                continue;
+            }
+            fold[lv] = true;
+        }
+        return new SuppressionStage(
+                Long.getLong("alert.suppress.windowMs", 10_000L),
+                Integer.getInteger("alert.suppress.maxEntries", 4096),
+                rates,
+                Double.parseDouble(System.getProperty("alert.suppress.burstSec", "2")),
+                Long.getLong("alert.suppress.summaryMs", 5000L),
+                fold,
+                metrics);
+    }
+
+    public long summaryMs() {
+        return summaryMs;
+    }
+
+    /**
+     * Quyết định 1 cảnh báo có được gửi hay không; bản bị chặn được cộng vào tóm tắt
+     */
+    public synchronized Decision check(String level, String topic, String msg, long nowMs) {
+        int lv = AlertFrame.levelCode(level);
+        String key = lv + "|" + topic + "|" + normalize(msg, foldDigits[lv]);
+        Tracked e = entries.get(key);
+        if (e != null && windowMs > 0 && nowMs - e.passedAt < windowMs) {
+            e.suppressed++;
+            duplicates[lv].increment();
+            return Decision.DUPLICATE;
+        }
+        if (!takeToken(lv)) {
+            if (e == null) {
+                e = new Tracked(lv, topic, msg);
+                e.passedAt = Long.MIN_VALUE / 2; // chưa từng gửi: bản sau được thử lại ngay khi có token
+                entries.put(key, e);
+            }
+            e.suppressed++;
+            rateLimited[lv].increment();
+            return Decision.RATE_LIMITED;
+        }
+        if (e == null) {
+            e = new Tracked(lv, topic, msg);
+            entries.put(key, e);
+        }
+        e.passedAt = nowMs;
+        return Decision.PASS;
+    }
+
+    private boolean takeToken(int lv) {
+        if (rate[lv] <= 0) return true;
+        long nowNanos = System.nanoTime();
+        tokens[lv] = Math.min(burst[lv], tokens[lv] + (nowNanos - lastRefillNanos[lv]) * rate[lv] / 1e9);
+        lastRefillNanos[lv] = nowNanos;
+        if (tokens[lv] < 1) return false;
+        tokens[lv] -= 1;
+        return true;
+    }
+
+    /**
+     * Lấy các cảnh báo tóm tắt cho những khóa có bản bị chặn kể từ lần gọi trước, rồi đặt lại số đếm;
+     * đồng thời bỏ các khóa đã hết cửa sổ để map không giữ khóa cũ
+     */
+    public synchronized List<Summary> drainSummaries(long nowMs) {
+        List<Summary> out = new ArrayList<>();
+        int[] overflow = evictedOverflow.clone();
+        int[] overflowKeys = evictedOverflowKeys.clone();
+        Arrays.fill(evictedOverflow, 0);
+        Arrays.fill(evictedOverflowKeys, 0);
+        for (Tracked e : evicted) summarize(e, out, overflow, overflowKeys);
+        evicted.clear();
+        for (Iterator<Tracked> it = entries.values().iterator(); it.hasNext(); ) {
+            Tracked e = it.next();
+            if (e.suppressed > 0) {
+                summarize(e, out, overflow, overflowKeys);
+                e.suppressed = 0;
+            } else if (nowMs - e.passedAt >= windowMs) {
+                it.remove();
+            }
+        }
+        for (int lv = 0; lv < overflow.length; lv++) {
+            if (overflow[lv] == 0) continue;
+            out.add(new Summary(AlertFrame.LEVELS[lv], "",
+                    "⏸ " + overflow[lv] + " cảnh báo khác (" + overflowKeys[lv] + " nội dung) bị chặn trong "
+                            + (summaryMs / 1000.0) + "s"));
+        }
+        return out;
+    }
+
+    private void summarize(Tracked e, List<Summary> out, int[] overflow, int[] overflowKeys) {
+        // Nội dung chỉ bị chặn 1 lần (thường do vượt tốc độ) không đáng 1 tóm tắt riêng
+        if (e.suppressed > 1 && out.size() < maxSummaries) {
+            out.add(new Summary(AlertFrame.LEVELS[e.level], e.topic,
+                    "⏸ " + e.sample + " (lặp lại " + e.suppressed + " lần, đã chặn)"));
+        } else {
+            overflow[e.level] += e.suppressed;
+            overflowKeys[e.level]++;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Chữ thường, gộp khoảng trắng: "Disk  91% on node-7" ~ "disk 91% on node-7";
+     * foldDigits thêm mọi dãy chữ số thành '#': "Disk 91% on node-7" ~ "disk 93% on node-12"
+     */
+    static String normalize(String msg, boolean foldDigits) {
+        StringBuilder sb = new StringBuilder(msg.length());
+        boolean space = false, digit = false;
+        for (int i = 0; i < msg.length(); i++) {
+            char c = msg.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                digit = false;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (foldDigits && Character.isDigit(c)) {
+                if (!digit) sb.append('#');
+                digit = true;
+                continue;
+            }
+            digit = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+}
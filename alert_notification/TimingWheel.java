@@ -0,0 +1,130 @@
+package alert_notification;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * TimingWheel.java
+ * Hashed timing wheel cho hạn chót theo khóa int (slot của client)
+ * - schedule/cancel O(1): mỗi khóa nằm trong 1 danh sách liên kết đôi của 1 ô, dùng mảng nguyên thủy
+ * - advance chỉ duyệt các ô vừa tới hạn; khóa được hẹn lại trước đó đã rời ô nên không bị chạm tới
+ * - Hạn chót xa hơn 1 vòng bánh xe vẫn đúng (so tick hạn chót, vòng sau mới hết hạn)
+ * - Không tạo object khi schedule/advance; mảng tự nới khi khóa vượt sức chứa
+ *
+ * Không thread-safe tự thân: mọi lời gọi phải đồng bộ trên chính đối tượng wheel.
+ */
+public class TimingWheel {
+
+    private static final int NONE = -1;
+
+    private final long tickMs;
+    private final int mask;
+    private final int[] heads;
+
+    private int[] next;
+    private int[] prev;
+    private int[] bucket;   // ô đang chứa khóa, NONE = không hẹn
+    private long[] dueTick;
+
+    private long currentTick;
+    private int scheduled;
+
+    /**
+     * @param tickMs   độ phân giải (ms)
+     * @param spanMs   khoảng hẹn thường gặp; bánh xe đủ lớn để hạn chót trong khoảng này không phải quay vòng
+     * @param capacity số khóa ban đầu (tự nới)
+     */
+    public TimingWheel(long tickMs, long spanMs, int capacity, long nowMs) {
+        this.tickMs = Math.max(1, tickMs);
+        long ticks = Math.max(2, spanMs / this.tickMs + 2);
+        int size = Integer.highestOneBit((int) Math.min(1 << 20, ticks - 1)) << 1;
+        this.mask = size - 1;
+        this.heads = new int[size];
+        Arrays.fill(heads, NONE);
+        this.currentTick = nowMs / this.tickMs;
+        grow(Math.max(16, capacity));
+    }
+
+    private void grow(int cap) {
+        int old = next == null ? 0 : next.length;
+        next = next == null ? new int[cap] : Arrays.copyOf(next, cap);
+        prev = prev == null ? new int[cap] : Arrays.copyOf(prev, cap);
+        bucket = bucket == null ? new int[cap] : Arrays.copyOf(bucket, cap);
+        dueTick = dueTick == null ? new long[cap] : Arrays.copyOf(dueTick, cap);
+        Arrays.fill(bucket, old, cap, NONE);
+    }
+
+    public long tickMs() {
+        return tickMs;
+    }
+
+    public int scheduled() {
+        return scheduled;
+    }
+
+    public boolean isScheduled(int key) {
+        return key < bucket.length && bucket[key] != NONE;
+    }
+
+    /**
+     * Hẹn (hoặc hẹn lại) khóa hết hạn tại deadlineMs
+     */
+    public void schedule(int key, long deadlineMs) {
+        if (key >= bucket.length) grow(Math.max(key + 1, bucket.length * 2));
+        long due = Math.max((deadlineMs + tickMs - 1) / tickMs, currentTick + 1);
+        int b = (int) (due & mask);
+        if (bucket[key] == b) {
+            dueTick[key] = due;
+            return;
+        }
+        unlink(key);
+        dueTick[key] = due;
+        bucket[key] = b;
+        prev[key] = NONE;
+        next[key] = heads[b];
+        if (heads[b] != NONE) prev[heads[b]] = key;
+        heads[b] = key;
+        scheduled++;
+    }
+
+    public void cancel(int key) {
+        if (key < bucket.length) unlink(key);
+    }
+
+    private void unlink(int key) {
+        int b = bucket[key];
+        if (b == NONE) return;
+        int p = prev[key], n = next[key];
+        if (p != NONE) next[p] = n; else heads[b] = n;
+        if (n != NONE) prev[n] = p;
+        bucket[key] = NONE;
+        scheduled--;
+    }
+
+    /**
+     * Quay bánh xe tới nowMs, gọi expired cho mỗi khóa đã hết hạn (khóa đã được gỡ trước khi gọi).
+     * expired không được schedule/cancel khóa khác trong lúc quay.
+     * @return số khóa hết hạn
+     */
+    public int advance(long nowMs, IntConsumer expired) {
+        long target = nowMs / tickMs;
+        int count = 0;
+        // Lâu không gọi: chỉ cần quét mỗi ô 1 lần
+        long from = Math.max(currentTick + 1, target - mask);
+        for (long t = from; t <= target; t++) {
+            int b = (int) (t & mask);
+            int key = heads[b];
+            while (key != NONE) {
+                int n = next[key];
+                if (dueTick[key] <= target) {
+                    unlink(key);
+                    count++;
+                    expired.accept(key);
+                }
+                key = n;
+            }
+        }
+        if (target > currentTick) currentTick = target;
+        return count;
+    }
+}
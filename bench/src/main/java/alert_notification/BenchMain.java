@@ -0,0 +1,35 @@
+package alert_notification;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * BenchMain.java
+ * Điểm vào của benchmarks.jar: nhận đủ tham số dòng lệnh của JMH nhưng luôn bật -prof gc
+ * (gc.alloc.rate.norm = B/op) để thấy hồi quy cấp phát trên các đường nóng
+ * - -h / -l / -lp: chuyển cho org.openjdk.jmh.Main
+ */
+public class BenchMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder b = new OptionsBuilder();
+        b.parent(cli);
+        boolean hasGc = false;
+        for (ProfilerConfig p : cli.getProfilers()) {
+            if (p.getKlass().equals("gc") || p.getKlass().equals(GCProfiler.class.getName())) hasGc = true;
+        }
+        if (!hasGc) b.addProfiler(GCProfiler.class);
+        Options opts = b.build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,101 @@
+package alert_notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClientsTableBenchmark.java
+ * Bảng client của Server (Server.ClientsTableModel, thay cho setClients + sort cả danh sách):
+ * thời gian 1 khung publish() với n client
+ * - initialLoad: n client mới cùng lúc (danh sách rỗng -> n dòng đã sắp xếp)
+ * - heartbeatFrame: FRAME_UPDATES client đã có gửi heartbeat trong 1 khung
+ * - churnFrame: FRAME_CHURN client rời đi rồi vào lại (xóa + chèn giữa danh sách đã sắp xếp)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientsTableBenchmark {
+
+    private static final int FRAME_UPDATES = 1000;
+    private static final int FRAME_CHURN = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int n;
+
+    private String[] ids;
+    private ClientRegistry registry;
+    private Server.ClientsTableModel loaded;
+    private InetSocketAddress from;
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        ids = new String[n];
+        registry = new ClientRegistry(3_600_000, 250, n);
+        from = new InetSocketAddress(InetAddress.getByName("10.0.0.7"), 40000);
+        long now = System.currentTimeMillis();
+        for (int k = 0; k < n; k++) {
+            ids[k] = "sensor-" + k;
+            registry.heartbeat(ids[k], from, now);
+        }
+        loaded = new Server.ClientsTableModel(registry);
+        for (String id : ids) loaded.markDirty(id);
+        loaded.publish();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int initialLoad() {
+        Server.ClientsTableModel m = new Server.ClientsTableModel(registry);
+        for (String id : ids) m.markDirty(id);
+        m.publish();
+        return m.getRowCount();
+    }
+
+    @Benchmark
+    public int heartbeatFrame() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int k = 0; k < FRAME_UPDATES; k++) loaded.markDirty(ids[rnd.nextInt(n)]);
+        loaded.publish();
+        return loaded.getRowCount();
+    }
+
+    @Benchmark
+    public int churnFrame() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String[] picked = new String[Math.min(FRAME_CHURN, n)];
+        for (int k = 0; k < picked.length; k++) {
+            picked[k] = ids[rnd.nextInt(n)];
+            registry.remove(picked[k]);
+            loaded.markDirty(picked[k]);
+        }
+        loaded.publish();
+        long now = System.currentTimeMillis();
+        for (String id : picked) {
+            registry.heartbeat(id, from, now);
+            loaded.markDirty(id);
+        }
+        loaded.publish();
+        return loaded.getRowCount();
+    }
+}
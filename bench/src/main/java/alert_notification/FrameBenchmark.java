@@ -0,0 +1,81 @@
+package alert_notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FrameBenchmark.java
+ * Định dạng payload cảnh báo trên đường gửi (sendAlert -> SendScheduler -> MulticastSender):
+ * encode / decode AlertFrame và dòng lịch sử Log.saveAlert tạo cho mỗi cảnh báo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    static final String MSG = "Disk usage on node-17 above 90% (mount /var, 91.4% used)";
+
+    private final AlertFrame.Encoder encoder = new AlertFrame.Encoder();
+    private final ByteBuffer out = ByteBuffer.allocateDirect(AlertFrame.MAX_DATAGRAM);
+    private final AlertFrame frame = new AlertFrame();
+    private final DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private ByteBuffer encoded;
+    private long seq;
+
+    @Setup
+    public void setup() {
+        encoder.encode(out, 0, AlertFrame.WARNING, 1, "disk", 1, 42, System.currentTimeMillis(), MSG);
+        out.flip();
+        encoded = ByteBuffer.allocateDirect(out.remaining());
+        encoded.put(out).flip();
+    }
+
+    @Benchmark
+    public int encode() {
+        out.clear();
+        encoder.encode(out, 0, AlertFrame.WARNING, 1, "disk", 1, seq++, System.currentTimeMillis(), MSG);
+        return out.position();
+    }
+
+    @Benchmark
+    public int encodeLegacy() {
+        out.clear();
+        encoder.encodeLegacy(out, AlertFrame.WARNING, MSG);
+        return out.position();
+    }
+
+    @Benchmark
+    public long decodeHeader() {
+        frame.decode(encoded.duplicate());
+        return frame.seq;
+    }
+
+    @Benchmark
+    public String decodeText() {
+        frame.decode(encoded.duplicate());
+        return frame.toText();
+    }
+
+    /** Dòng "yyyy-MM-dd HH:mm:ss [LEVEL] (topic) msg" như Log.saveAlert */
+    @Benchmark
+    public String formatLogLine() {
+        return fmt.format(Instant.now()) + " [WARNING] (disk) " + MSG;
+    }
+}
@@ -0,0 +1,89 @@
+package alert_notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HeartbeatBenchmark.java
+ * Đường nhận heartbeat (HeartbeatIngest -> ServerEngine.IngestHandler) với n client đã biết:
+ * tra client ID trên byte của gói (IdCache) và cập nhật ClientRegistry (touch, thay cho clients.compute cũ)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeartbeatBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int n;
+
+    private static final int CAPS = ClientRegistry.CAP_BATCH | ClientRegistry.CAP_HBACK;
+    private static final int PREFIX = ("HBC:" + CAPS + ":").length();
+
+    private ByteBuffer[] packets;
+    private String[] ids;
+    private HeartbeatIngest.IdCache cache;
+    private ClientRegistry registry;
+    private InetSocketAddress from;
+    private int i;
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        packets = new ByteBuffer[n];
+        ids = new String[n];
+        cache = new HeartbeatIngest.IdCache();
+        registry = new ClientRegistry(20_000, 250, n);
+        from = new InetSocketAddress(InetAddress.getByName("10.0.0.7"), 40000);
+        long now = System.currentTimeMillis();
+        for (int k = 0; k < n; k++) {
+            ids[k] = "sensor-" + k;
+            byte[] b = ("HBC:" + CAPS + ":" + ids[k]).getBytes(StandardCharsets.UTF_8);
+            packets[k] = ByteBuffer.allocateDirect(b.length);
+            packets[k].put(b).flip();
+            cache.lookup(packets[k], PREFIX, b.length);
+            registry.touch(ids[k], CAPS, from, now);
+        }
+    }
+
+    private int next() {
+        int k = i;
+        i = k + 1 == n ? 0 : k + 1;
+        return k;
+    }
+
+    @Benchmark
+    public String idLookup() {
+        ByteBuffer p = packets[next()];
+        return cache.lookup(p, PREFIX, p.limit());
+    }
+
+    @Benchmark
+    public long registryTouch() {
+        return registry.touch(ids[next()], CAPS, from, System.currentTimeMillis());
+    }
+
+    /** Cả 2 bước cho 1 gói, như 1 lần dispatch của HeartbeatIngest.Worker */
+    @Benchmark
+    public long lookupAndTouch() {
+        ByteBuffer p = packets[next()];
+        return registry.touch(cache.lookup(p, PREFIX, p.limit()), CAPS, from, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,102 @@
+package alert_notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogBenchmark.java
+ * Log.saveAlert và đọc lịch sử (getHistory, HistoryStore) khi alerts.log đã có n bản ghi
+ * - Log dùng alerts.log trong thư mục hiện tại: chạy benchmark trong 1 thư mục trống,
+ *   setup từ chối chạy nếu đã có alerts.log (không ghi đè log thật), teardown xóa alerts.log*
+ * - saveAlert chỉ enqueue (không chờ đĩa); khi writer không theo kịp, bản ghi bị bỏ và được đếm
+ *   (failed records in ở cuối mỗi trial)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+
+    private static final Path LOG = Paths.get("alerts.log");
+
+    @Param({"1000", "10000", "100000"})
+    public int n;
+
+    private HistoryStore store;
+    private int size;
+    private long seq;
+
+    @Setup
+    public void setup() throws IOException {
+        if (Files.exists(LOG)) {
+            throw new IllegalStateException("Đã có " + LOG.toAbsolutePath() + ": hãy chạy benchmark trong thư mục trống");
+        }
+        String[] levels = AlertFrame.LEVELS;
+        AlertJournal journal = Log.journal();
+        for (int k = 0; k < n; k++) {
+            String line = "2026-01-01 00:00:00 [" + levels[k % levels.length] + "] (disk) " + FrameBenchmark.MSG + " #" + k;
+            while (!journal.tryAppend(line)) journal.flush();
+        }
+        journal.flush();
+        store = Log.history();
+        size = store.size();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        AlertJournal j = Log.journal();
+        long failed = j.failedRecords();
+        if (failed > 0) System.out.println("(journal full: " + failed + " records dropped by saveAlert)");
+        Log.shutdown();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(LOG.toAbsolutePath().getParent(), "alerts.log*")) {
+            for (Path p : ds) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public boolean saveAlert() {
+        return Log.saveAlert("WARNING", "disk", FrameBenchmark.MSG + " #" + seq++);
+    }
+
+    /** Đọc toàn bộ lịch sử: O(n) */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int getHistory() {
+        List<String> all = Log.getHistory();
+        return all.size();
+    }
+
+    /** 1 trang của danh sách lịch sử ảo trên Server */
+    @Benchmark
+    public int historyPage() {
+        int from = ThreadLocalRandom.current().nextInt(Math.max(1, size - HistoryStore.STRIDE));
+        return store.getRange(from, HistoryStore.STRIDE).size();
+    }
+
+    @Benchmark
+    public int historyQueryLevel() {
+        return store.query("ERROR", 0, Long.MAX_VALUE, ThreadLocalRandom.current().nextInt(16), 50).total;
+    }
+}
@@ -0,0 +1,66 @@
+package alert_notification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SendBenchmark.java
+ * Thông lượng gửi multicast (syscall thật, group 230.0.0.250:5998 không ai join): 1 cảnh báo / datagram
+ * và container 16 cảnh báo / datagram (FLAG_BATCH)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendBenchmark {
+
+    private static final int BATCH = 16;
+
+    private MulticastSender sender;
+    private final String[] levels = new String[BATCH];
+    private final String[] topics = new String[BATCH];
+    private final String[] msgs = new String[BATCH];
+
+    @Setup
+    public void setup() throws IOException {
+        sender = new MulticastSender(new InetSocketAddress(InetAddress.getByName("230.0.0.250"), 5998),
+                0, 1, false, new RetransmitRing(4096));
+        for (int i = 0; i < BATCH; i++) {
+            levels[i] = AlertFrame.LEVELS[i % AlertFrame.LEVELS.length];
+            topics[i] = "disk";
+            msgs[i] = FrameBenchmark.MSG;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sender.close();
+    }
+
+    @Benchmark
+    public long send() throws IOException {
+        return sender.send("WARNING", "disk", FrameBenchmark.MSG);
+    }
+
+    /** Mỗi op = 1 datagram chứa BATCH cảnh báo */
+    @Benchmark
+    public long sendBatch() throws IOException {
+        return sender.sendBatch(BATCH, levels, topics, msgs);
+    }
+}
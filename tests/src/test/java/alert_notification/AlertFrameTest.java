@@ -0,0 +1,354 @@
+package alert_notification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AlertFrameTest.java
+ * Định dạng trên đường truyền: client khác phải đọc được nên mọi thay đổi byte đều phải cố ý
+ * - Round-trip version 2 (topic, UTF-8, cờ), version 1 và text legacy
+ * - Container nhiều frame con (decodeNext)
+ * - Cắt topic ở MAX_TOPIC, lỗi khi body không vừa 1 datagram
+ * - Frame hỏng: thiếu byte, sai magic/version, độ dài vượt quá dữ liệu
+ */
+class AlertFrameTest {
+
+    private final AlertFrame.Encoder encoder = new AlertFrame.Encoder();
+    private final AlertFrame frame = new AlertFrame();
+
+    private ByteBuffer encode(int flags, int level, int channel, String topic, int epoch, long seq, long ts, String body) {
+        ByteBuffer out = ByteBuffer.allocate(AlertFrame.MAX_DATAGRAM);
+        encoder.encode(out, flags, level, channel, topic, epoch, seq, ts, body);
+        out.flip();
+        return out;
+    }
+
+    private static ByteBuffer bytes(int... b) {
+        ByteBuffer out = ByteBuffer.allocate(b.length);
+        for (int x : b) out.put((byte) x);
+        out.flip();
+        return out;
+    }
+
+    // ===== Version 2 =====
+
+    @Test
+    void roundTripV2() {
+        ByteBuffer b = encode(AlertFrame.FLAG_REPLAY, AlertFrame.ERROR, 3, "db/primary", 0x12345678, 1L << 40,
+                1_700_000_000_123L, "Mất kết nối tới node-7 ✔");
+        assertEquals(AlertFrame.HEADER_SIZE + "db/primary".length()
+                + "Mất kết nối tới node-7 ✔".getBytes(StandardCharsets.UTF_8).length, b.remaining());
+        assertTrue(frame.decode(b));
+        assertFalse(frame.legacy);
+        assertEquals(AlertFrame.FLAG_REPLAY, frame.flags);
+        assertTrue(frame.isReplay());
+        assertFalse(frame.isBatch());
+        assertEquals(AlertFrame.ERROR, frame.level);
+        assertEquals(3, frame.channel);
+        assertEquals(0x12345678, frame.epoch);
+        assertEquals(1L << 40, frame.seq);
+        assertEquals(1_700_000_000_123L, frame.timestamp);
+        assertEquals("db/primary", frame.topic());
+        assertEquals("Mất kết nối tới node-7 ✔", frame.body());
+        assertEquals("[ERROR/db/primary] Mất kết nối tới node-7 ✔", frame.toText());
+        assertEquals(0, b.position(), "decode không tiêu thụ buffer");
+    }
+
+    @Test
+    void headerLayoutIsBigEndianAtFixedOffsets() {
+        ByteBuffer b = encode(0, AlertFrame.WARNING, 2, "t", 7, 9, 11, "x");
+        assertEquals(AlertFrame.MAGIC, b.get(0));
+        assertEquals(AlertFrame.VERSION, b.get(1));
+        assertEquals(0, b.get(2));
+        assertEquals(AlertFrame.WARNING, b.get(3));
+        assertEquals(2, b.get(4));
+        assertEquals(1, b.get(5));
+        assertEquals(7, b.getInt(6));
+        assertEquals(9, b.getLong(10));
+        assertEquals(11, b.getLong(18));
+        assertEquals(1, b.getShort(26));
+        assertEquals('t', b.get(28));
+        assertEquals('x', b.get(29));
+    }
+
+    @Test
+    void emptyTopicAndBody() {
+        assertTrue(frame.decode(encode(0, AlertFrame.INFO, 0, null, 1, 0, 0, "")));
+        assertEquals("", frame.topic());
+        assertEquals("", frame.body());
+        assertEquals(0, frame.bodyLength());
+        assertEquals("[INFO] ", frame.toText());
+    }
+
+    @Test
+    void decodesAtNonZeroPosition() {
+        ByteBuffer enc = encode(0, AlertFrame.WARNING, 1, "disk", 5, 42, 99, "91%");
+        ByteBuffer b = ByteBuffer.allocate(enc.remaining() + 10);
+        b.position(10);
+        b.put(enc);
+        b.position(10);
+        assertTrue(frame.decode(b));
+        assertEquals(42, frame.seq);
+        assertEquals("disk", frame.topic());
+        assertEquals("91%", frame.body());
+    }
+
+    @Test
+    void topicTruncatedAtMaxTopic() {
+        char[] c = new char[AlertFrame.MAX_TOPIC + 40];
+        Arrays.fill(c, 't');
+        assertTrue(frame.decode(encode(0, AlertFrame.INFO, 0, new String(c), 1, 1, 1, "body")));
+        assertEquals(AlertFrame.MAX_TOPIC, frame.topic().length());
+        assertEquals("body", frame.body());
+    }
+
+    @Test
+    void topicTruncationKeepsWholeUtf8Characters() {
+        // 'ệ' = 3 byte: 255 byte chỉ chứa trọn 85 ký tự
+        char[] c = new char[100];
+        Arrays.fill(c, 'ệ');
+        assertTrue(frame.decode(encode(0, AlertFrame.INFO, 0, new String(c), 1, 1, 1, "body")));
+        assertEquals(85, frame.topic().length());
+        assertEquals(new String(c, 0, 85), frame.topic());
+        assertEquals("body", frame.body());
+    }
+
+    @Test
+    void largestBodyFitsOneDatagram() {
+        char[] c = new char[AlertFrame.MAX_DATAGRAM - AlertFrame.HEADER_SIZE];
+        Arrays.fill(c, 'x');
+        String body = new String(c);
+        assertTrue(AlertFrame.fits("", body));
+        ByteBuffer b = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, body);
+        assertEquals(AlertFrame.MAX_DATAGRAM, b.remaining());
+        assertTrue(frame.decode(b));
+        assertEquals(body, frame.body());
+    }
+
+    @Test
+    void oversizedBodyIsRejected() {
+        char[] c = new char[AlertFrame.MAX_DATAGRAM - AlertFrame.HEADER_SIZE + 1];
+        Arrays.fill(c, 'x');
+        String body = new String(c);
+        assertFalse(AlertFrame.fits("", body));
+        assertThrows(IllegalArgumentException.class, () -> encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, body));
+        // topic cũng chiếm chỗ trong datagram
+        assertFalse(AlertFrame.fits("t", new String(c, 0, c.length - 1)));
+    }
+
+    @Test
+    void fitsCountsUtf8Bytes() {
+        assertEquals(3, AlertFrame.utf8Length("ệ"));
+        assertEquals(4, AlertFrame.utf8Length(new String(Character.toChars(0x1F525))));
+        assertEquals(1, AlertFrame.utf8Length("\uD800"), "surrogate lẻ được thay bằng '?'");
+        char[] c = new char[(AlertFrame.MAX_DATAGRAM - AlertFrame.HEADER_SIZE) / 3 + 1];
+        Arrays.fill(c, 'ệ');
+        assertFalse(AlertFrame.fits("", new String(c)));
+        assertTrue(AlertFrame.fits("", new String(c, 0, c.length - 1)));
+    }
+
+    // ===== Version 1 =====
+
+    @Test
+    void decodesV1() {
+        ByteBuffer b = ByteBuffer.allocate(AlertFrame.HEADER_SIZE_V1 + 5);
+        b.put(AlertFrame.MAGIC).put((byte) 1).put((byte) 0).put((byte) AlertFrame.WARNING)
+                .putInt(3).putLong(17).putLong(1234).putShort((short) 5)
+                .put("hello".getBytes(StandardCharsets.US_ASCII));
+        b.flip();
+        assertTrue(frame.decode(b));
+        assertFalse(frame.legacy);
+        assertEquals(AlertFrame.WARNING, frame.level);
+        assertEquals(0, frame.channel);
+        assertEquals(3, frame.epoch);
+        assertEquals(17, frame.seq);
+        assertEquals(1234, frame.timestamp);
+        assertEquals("", frame.topic());
+        assertEquals("hello", frame.body());
+    }
+
+    @Test
+    void rejectsTruncatedV1Body() {
+        ByteBuffer b = ByteBuffer.allocate(AlertFrame.HEADER_SIZE_V1 + 4);
+        b.put(AlertFrame.MAGIC).put((byte) 1).put((byte) 0).put((byte) 0)
+                .putInt(3).putLong(17).putLong(1234).putShort((short) 5)
+                .put("hell".getBytes(StandardCharsets.US_ASCII));
+        b.flip();
+        assertFalse(frame.decode(b));
+    }
+
+    // ===== Legacy =====
+
+    @Test
+    void roundTripLegacy() {
+        ByteBuffer out = ByteBuffer.allocate(256);
+        encoder.encodeLegacy(out, AlertFrame.WARNING, "Ổ đĩa gần đầy");
+        out.flip();
+        assertEquals("[WARNING] Ổ đĩa gần đầy", StandardCharsets.UTF_8.decode(out.duplicate()).toString());
+        assertTrue(frame.decode(out));
+        assertTrue(frame.legacy);
+        assertEquals(AlertFrame.WARNING, frame.level);
+        assertEquals(-1, frame.seq);
+        assertEquals("Ổ đĩa gần đầy", frame.body());
+        assertFalse(frame.isBatch());
+        assertFalse(frame.isReplay());
+    }
+
+    @Test
+    void legacyWithUnknownLevelOrNoBracket() {
+        assertTrue(frame.decode(ByteBuffer.wrap("[DEBUG] x".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(AlertFrame.INFO, frame.level);
+        assertEquals("x", frame.body());
+
+        assertTrue(frame.decode(ByteBuffer.wrap("[ERROR]x".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(AlertFrame.ERROR, frame.level);
+        assertEquals("x", frame.body());
+
+        assertTrue(frame.decode(ByteBuffer.wrap("[no close".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(frame.legacy);
+        assertEquals("[no close", frame.body());
+    }
+
+    @Test
+    void decodeResetsFieldsBetweenFormats() {
+        assertTrue(frame.decode(encode(AlertFrame.FLAG_REPLAY, AlertFrame.ERROR, 4, "db", 9, 100, 5, "a")));
+        assertTrue(frame.decode(ByteBuffer.wrap("[INFO] b".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(0, frame.channel);
+        assertEquals(0, frame.flags);
+        assertEquals(-1, frame.seq);
+        assertEquals("", frame.topic());
+        assertEquals("b", frame.body());
+    }
+
+    // ===== Container =====
+
+    /** Dựng container như MulticastSender.sendBatch */
+    private ByteBuffer batch(int channel, int epoch, long firstSeq, String... bodies) {
+        ByteBuffer out = ByteBuffer.allocate(AlertFrame.MAX_DATAGRAM);
+        out.position(AlertFrame.HEADER_SIZE);
+        for (int i = 0; i < bodies.length; i++) {
+            int lenPos = out.position();
+            out.position(lenPos + 2);
+            encoder.encode(out, 0, i % 3, channel, i % 2 == 0 ? "" : "t" + i, epoch, firstSeq + i, 1000 + i, bodies[i]);
+            out.putShort(lenPos, (short) (out.position() - lenPos - 2));
+        }
+        encoder.encodeBatchHeader(out, 0, AlertFrame.ERROR, channel, epoch, firstSeq, 1000);
+        out.flip();
+        return out;
+    }
+
+    private List<String> children(ByteBuffer b) {
+        List<String> out = new ArrayList<>();
+        int end = frame.batchEnd();
+        for (int p = frame.batchStart(); (p = frame.decodeNext(b, p, end)) >= 0; ) {
+            out.add(frame.seq + "|" + frame.level + "|" + frame.channel + "|" + frame.topic() + "|" + frame.body());
+        }
+        return out;
+    }
+
+    @Test
+    void batchRoundTrip() {
+        ByteBuffer b = batch(2, 7, 50, "a", "bb", "ccc");
+        assertTrue(frame.decode(b));
+        assertTrue(frame.isBatch());
+        assertEquals(50, frame.seq);
+        assertEquals(7, frame.epoch);
+        assertEquals(2, frame.channel);
+        assertEquals(Arrays.asList("50|0|2||a", "51|1|2|t1|bb", "52|2|2||ccc"), children(b));
+    }
+
+    @Test
+    void batchStopsAtTruncatedChild() {
+        ByteBuffer b = batch(0, 1, 10, "first", "second");
+        assertTrue(frame.decode(b));
+        int end = frame.batchEnd();
+        int start = frame.batchStart();
+        // Frame con thứ 2 khai báo dài hơn phần còn lại của container
+        int second = frame.decodeNext(b, start, end);
+        assertTrue(second > 0);
+        assertEquals(-1, frame.decodeNext(b, second, end - 1));
+        assertEquals(-1, frame.decodeNext(b, end - 1, end), "thiếu cả 2 byte độ dài");
+        assertEquals(-1, frame.decodeNext(b, end, end));
+    }
+
+    @Test
+    void batchRejectsNestedContainerAndLegacyChild() {
+        ByteBuffer inner = batch(0, 1, 1, "x");
+        ByteBuffer legacy = ByteBuffer.wrap("[INFO] y".getBytes(StandardCharsets.UTF_8));
+        for (ByteBuffer child : new ByteBuffer[]{inner, legacy}) {
+            ByteBuffer out = ByteBuffer.allocate(512);
+            out.position(AlertFrame.HEADER_SIZE);
+            out.putShort((short) child.remaining()).put(child.duplicate());
+            encoder.encodeBatchHeader(out, 0, AlertFrame.INFO, 0, 1, 1, 0);
+            out.flip();
+            assertTrue(frame.decode(out));
+            assertTrue(frame.isBatch());
+            assertEquals(-1, frame.decodeNext(out, frame.batchStart(), frame.batchEnd()));
+        }
+    }
+
+    // ===== Frame hỏng =====
+
+    @Test
+    void rejectsEmptyAndShortInput() {
+        assertFalse(frame.decode(ByteBuffer.allocate(0)));
+        ByteBuffer full = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, "x");
+        for (int n = 1; n < AlertFrame.HEADER_SIZE; n++) {
+            ByteBuffer cut = full.duplicate();
+            cut.limit(n);
+            assertFalse(frame.decode(cut), "cắt còn " + n + " byte");
+        }
+    }
+
+    @Test
+    void rejectsBadMagicAndUnknownVersion() {
+        ByteBuffer b = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, "x");
+        b.put(0, (byte) 0x00);
+        assertFalse(frame.decode(b));
+        b = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, "x");
+        b.put(1, (byte) 3);
+        assertFalse(frame.decode(b));
+        assertFalse(frame.decode(bytes(0xA7, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0)));
+    }
+
+    @Test
+    void rejectsLengthsPastEndOfDatagram() {
+        ByteBuffer b = encode(0, AlertFrame.INFO, 0, "topic", 1, 1, 1, "body");
+        ByteBuffer cut = b.duplicate();
+        cut.limit(b.limit() - 1);
+        assertFalse(frame.decode(cut), "body bị cắt");
+
+        b.put(5, (byte) 200);
+        assertFalse(frame.decode(b), "topicLen vượt quá dữ liệu");
+
+        b = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, "body");
+        b.putShort(26, (short) 0xFFFF);
+        assertFalse(frame.decode(b), "bodyLen vượt quá dữ liệu");
+    }
+
+    @Test
+    void invalidUtf8IsReplacedNotThrown() {
+        ByteBuffer b = encode(0, AlertFrame.INFO, 0, "", 1, 1, 1, "ab");
+        b.put(AlertFrame.HEADER_SIZE, (byte) 0xC3);
+        assertTrue(frame.decode(b));
+        assertEquals("\uFFFDb", frame.body());
+    }
+
+    @Test
+    void levelHelpers() {
+        assertEquals(AlertFrame.ERROR, AlertFrame.levelCode("ERROR"));
+        assertEquals(AlertFrame.INFO, AlertFrame.levelCode("unknown"));
+        assertEquals("INFO", AlertFrame.levelName(99));
+        assertEquals("WARNING", AlertFrame.levelName(AlertFrame.WARNING));
+    }
+}
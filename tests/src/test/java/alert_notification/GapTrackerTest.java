@@ -0,0 +1,216 @@
+package alert_notification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * GapTrackerTest.java
+ * Kịch bản phát hiện mất gói phía client (thời gian giả lập, độ trễ NAK cố định 10 ms)
+ * - Khoảng trống -> NAK -> gói gửi lại, NAK gộp thành khoảng, gửi lại NAK rồi bỏ cuộc
+ * - Gói trùng, gói đến trễ, epoch mới, khoảng trống vượt cửa sổ
+ * - Phát lại khi mới vào (onReplay) không mở khoảng trống
+ * - Mọi seq bị tính là mất đều được báo qua tick() đúng 1 lần
+ */
+class GapTrackerTest {
+
+    private static final int CHANNEL = 2;
+    private static final int EPOCH = 7;
+
+    private final List<String> naks = new ArrayList<>();
+    private final GapTracker.NakSender sender = (c, e, from, to) -> naks.add(c + ":" + e + ":" + from + "-" + to);
+
+    /** Cửa sổ 16 seq, NAK sau đúng 10 ms, thử lại mỗi 100 ms, tối đa 3 lần */
+    private final GapTracker g = new GapTracker(CHANNEL, 16, 10, 10, 100, 3);
+
+    private int reportedLost;
+
+    private void tick(long now) {
+        reportedLost += g.tick(now, sender);
+    }
+
+    @Test
+    void inOrderFramesAreNew() {
+        for (long s = 1; s <= 5; s++) assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH, s, 0));
+        tick(1000);
+        assertTrue(naks.isEmpty());
+        assertEquals(5, g.received());
+        assertEquals(0, g.gaps());
+        assertEquals(0, g.pending());
+    }
+
+    @Test
+    void gapIsNakedAfterDelayThenRepaired() {
+        g.onFrame(EPOCH, 1, 0);
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH, 5, 0));
+        assertEquals(3, g.gaps());
+        assertEquals(3, g.pending());
+
+        tick(9);
+        assertTrue(naks.isEmpty(), "chưa tới hạn: gói có thể chỉ đến trễ");
+        tick(10);
+        assertEquals(Arrays.asList(CHANNEL + ":" + EPOCH + ":2-4"), naks, "các seq liên tiếp gộp thành 1 NAK");
+
+        assertEquals(GapTracker.Result.RECOVERED, g.onFrame(EPOCH, 3, 20));
+        assertEquals(GapTracker.Result.RECOVERED, g.onFrame(EPOCH, 2, 20));
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH, 3, 20), "gói gửi lại tới 2 lần");
+        assertEquals(1, g.pending());
+
+        naks.clear();
+        tick(110);
+        assertEquals(Arrays.asList(CHANNEL + ":" + EPOCH + ":4-4"), naks, "chỉ NAK lại seq còn thiếu");
+        assertEquals(GapTracker.Result.RECOVERED, g.onFrame(EPOCH, 4, 120));
+
+        assertEquals(3, g.recovered());
+        assertEquals(0, g.lost());
+        assertEquals(1, g.duplicates());
+        assertEquals(0, g.pending());
+    }
+
+    @Test
+    void separateRangesGetSeparateNaks() {
+        g.onFrame(EPOCH, 1, 0);
+        g.onFrame(EPOCH, 3, 0);
+        g.onFrame(EPOCH, 6, 0);
+        tick(10);
+        assertEquals(Arrays.asList(CHANNEL + ":" + EPOCH + ":2-2", CHANNEL + ":" + EPOCH + ":4-5"), naks);
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsAndReportsLossOnce() {
+        g.onFrame(EPOCH, 1, 0);
+        g.onFrame(EPOCH, 4, 0);
+        tick(10);
+        tick(110);
+        tick(210);
+        assertEquals(3, naks.size());
+        assertEquals(0, reportedLost);
+        tick(310);
+        assertEquals(3, naks.size(), "không NAK thêm sau lần thử cuối");
+        assertEquals(2, reportedLost);
+        assertEquals(2, g.lost());
+        assertEquals(0, g.pending());
+        tick(1000);
+        assertEquals(2, reportedLost);
+
+        // Gói đến sau khi đã bỏ cuộc vẫn được hiển thị
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH, 2, 1000));
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH, 2, 1000));
+    }
+
+    @Test
+    void duplicatesAndLateFrames() {
+        g.onFrame(EPOCH, 10, 0);
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH, 10, 0));
+        // Cũ hơn seq đầu tiên nhận được: không phải khoảng trống, chỉ hiển thị 1 lần
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH, 9, 0));
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH, 9, 0));
+        assertEquals(0, g.pending());
+        assertEquals(2, g.duplicates());
+    }
+
+    @Test
+    void olderEpochIsDuplicate() {
+        g.onFrame(EPOCH, 10, 0);
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH - 1, 11, 0));
+        assertEquals(0, g.pending());
+    }
+
+    @Test
+    void epochBumpRestartsSequenceAndCountsAbandonedGaps() {
+        g.onFrame(EPOCH, 100, 0);
+        g.onFrame(EPOCH, 103, 0);
+        assertEquals(2, g.pending());
+
+        // Server khởi động lại: seq đếm lại từ đầu, không NAK seq của epoch cũ
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH + 1, 1, 5));
+        assertEquals(0, g.pending());
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH + 1, 2, 5));
+        tick(100);
+        assertTrue(naks.isEmpty());
+        assertEquals(2, g.lost(), "khoảng trống của epoch cũ không còn sửa được");
+        assertEquals(2, reportedLost);
+
+        // Seq trùng với epoch cũ không bị coi là trùng lặp
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH + 1, 100, 5));
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH + 1, 103, 5));
+        tick(105);
+        assertTrue(naks.stream().allMatch(n -> n.startsWith(CHANNEL + ":" + (EPOCH + 1) + ":")));
+    }
+
+    @Test
+    void gapWiderThanWindowCountsOverflowAsLost() {
+        g.onFrame(EPOCH, 1, 0);
+        // Cửa sổ 16: chỉ 15 seq ngay trước 100 được NAK, phần còn lại (2..84) tính là mất ngay
+        g.onFrame(EPOCH, 100, 0);
+        assertEquals(15, g.pending());
+        assertEquals(83, g.lost());
+        tick(10);
+        assertEquals(Arrays.asList(CHANNEL + ":" + EPOCH + ":85-99"), naks);
+        assertEquals(83, reportedLost, "mất do vượt cửa sổ cũng được báo qua tick()");
+    }
+
+    @Test
+    void repeatedGapsStayWithinWindow() {
+        long seq = 1;
+        g.onFrame(EPOCH, seq, 0);
+        for (int i = 0; i < 50; i++) {
+            seq += 3; // mỗi lần mất 2 seq
+            g.onFrame(EPOCH, seq, 0);
+            assertTrue(g.pending() <= 16);
+        }
+        tick(10);
+        tick(110);
+        tick(210);
+        tick(310);
+        assertEquals(0, g.pending());
+        assertEquals(100, g.lost());
+        assertEquals(100, reportedLost);
+    }
+
+    @Test
+    void replayBeforeFirstMulticastIsKeptForDedup() {
+        // Client mới vào: phát lại 5..8 tới trước gói multicast đầu tiên
+        for (long s = 5; s <= 8; s++) assertTrue(g.onReplay(EPOCH, s));
+        assertFalse(g.onReplay(EPOCH, 6), "lần phát lại thứ 2");
+        // Gói multicast 8 đã thấy qua phát lại
+        assertEquals(GapTracker.Result.DUPLICATE, g.onFrame(EPOCH, 8, 0));
+        assertEquals(GapTracker.Result.NEW, g.onFrame(EPOCH, 9, 0));
+        tick(100);
+        assertTrue(naks.isEmpty(), "phát lại không mở khoảng trống");
+    }
+
+    @Test
+    void replayFillsPendingGapAndSkipsLogLines() {
+        g.onFrame(EPOCH, 1, 0);
+        g.onFrame(EPOCH, 4, 0);
+        assertTrue(g.onReplay(EPOCH, 2));
+        assertEquals(1, g.recovered());
+        assertEquals(1, g.pending());
+        // Dòng nạp từ alerts.log (seq -1) và frame của epoch khác luôn hiển thị
+        assertTrue(g.onReplay(0, -1));
+        assertTrue(g.onReplay(0, -1));
+        assertTrue(g.onReplay(EPOCH - 1, 2));
+        // Seq đã có qua phát lại thì không NAK nữa
+        g.onFrame(EPOCH, 6, 0);
+        assertTrue(g.onReplay(EPOCH, 5));
+        tick(10);
+        assertEquals(Arrays.asList(CHANNEL + ":" + EPOCH + ":3-3"), naks);
+    }
+
+    @Test
+    void nakRangeIsCappedAtRepairLimit() {
+        GapTracker wide = new GapTracker(0, 4 * RepairService.MAX_NAK_RANGE, 0, 0, 100, 3);
+        wide.onFrame(1, 0, 0);
+        wide.onFrame(1, RepairService.MAX_NAK_RANGE + 11, 0);
+        wide.tick(0, sender);
+        assertEquals(Arrays.asList("0:1:1-" + RepairService.MAX_NAK_RANGE,
+                "0:1:" + (RepairService.MAX_NAK_RANGE + 1) + "-" + (RepairService.MAX_NAK_RANGE + 10)), naks);
+    }
+}
@@ -0,0 +1,90 @@
+package alert_notification;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RetransmitRingTest.java
+ * Vòng đệm trả lời NAK: lấy đúng frame theo seq, ô bị ghi đè thì báo không còn
+ */
+class RetransmitRingTest {
+
+    private static ByteBuffer frame(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String copy(RetransmitRing ring, long seq) {
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        if (!ring.copyTo(seq, out)) return null;
+        out.flip();
+        return StandardCharsets.UTF_8.decode(out).toString();
+    }
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new RetransmitRing(5).capacity());
+        assertEquals(8, new RetransmitRing(8).capacity());
+        assertEquals(4, new RetransmitRing(0).capacity(), "tối thiểu 4 ô");
+        assertEquals(4096, new RetransmitRing(4096).capacity());
+    }
+
+    @Test
+    void storesAndCopiesBySeq() {
+        RetransmitRing ring = new RetransmitRing(8);
+        ByteBuffer src = frame("xxframe-1");
+        src.position(2);
+        ring.put(1, src);
+        assertEquals(2, src.position(), "put không đổi position của src");
+        ring.put(2, frame("frame-2"));
+        assertEquals("frame-1", copy(ring, 1));
+        assertEquals("frame-2", copy(ring, 2));
+        assertTrue(ring.contains(2));
+        assertFalse(ring.contains(3), "chưa từng gửi");
+        assertFalse(ring.contains(-1));
+        assertEquals(null, copy(ring, -1));
+    }
+
+    @Test
+    void overwriteEvictsOldestSeq() {
+        RetransmitRing ring = new RetransmitRing(8);
+        for (long s = 1; s <= 20; s++) ring.put(s, frame("f" + s));
+        for (long s = 1; s <= 12; s++) {
+            assertFalse(ring.contains(s), "seq " + s + " đã bị ghi đè");
+            assertEquals(null, copy(ring, s));
+        }
+        for (long s = 13; s <= 20; s++) assertEquals("f" + s, copy(ring, s));
+    }
+
+    @Test
+    void reusedSlotHoldsOnlyNewFrameBytes() {
+        RetransmitRing ring = new RetransmitRing(2);
+        byte[] big = new byte[600];
+        Arrays.fill(big, (byte) 'a');
+        ring.put(0, ByteBuffer.wrap(big));
+        ring.put(2, frame("short"));
+        assertEquals("short", copy(ring, 2));
+        byte[] bigger = new byte[900];
+        Arrays.fill(bigger, (byte) 'b');
+        ring.put(4, ByteBuffer.wrap(bigger));
+        ByteBuffer out = ByteBuffer.allocate(900);
+        assertTrue(ring.copyTo(4, out));
+        assertArrayEquals(bigger, out.array());
+    }
+
+    @Test
+    void copyFailsWhenOutputTooSmall() {
+        RetransmitRing ring = new RetransmitRing(4);
+        ring.put(1, frame("0123456789"));
+        ByteBuffer out = ByteBuffer.allocate(5);
+        assertFalse(ring.copyTo(1, out));
+        assertEquals(0, out.position());
+    }
+}